@@ -0,0 +1,40 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+/**
+ * Builds an in-memory adjacency in two passes over the edges of a graph. All edges have to be passed to
+ * {@link #count(long, long)}, then after {@link #startFill()} the same edges have to be passed to
+ * {@link #fill(long, long)} in any order.
+ *
+ * @param <T> the type of the built adjacency
+ */
+interface AdjacencyBuilder<T> {
+	/**
+	 * Counts an edge on the first pass
+	 */
+	void count(long from, long to);
+
+	/**
+	 * Gets the number of edges counted so far
+	 */
+	long edgeCount();
+
+	/**
+	 * Gets the memory in bytes needed for the adjacency of the counted edges
+	 */
+	long estimateMemory();
+
+	/**
+	 * Finishes counting and allocates the space for the edges
+	 */
+	void startFill();
+
+	/**
+	 * Adds an edge to the adjacency on the second pass
+	 */
+	void fill(long from, long to);
+
+	/**
+	 * Finishes filling and creates the adjacency
+	 */
+	T build();
+}
@@ -0,0 +1,38 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Long-indexed array of floats that supports atomic additions, used to accumulate ranks from several threads
+ */
+class AtomicFloatArray {
+	private static final int CHUNK_BITS = ChunkedLongArray.CHUNK_BITS;
+	private static final int CHUNK_SIZE = ChunkedLongArray.CHUNK_SIZE;
+	private static final int CHUNK_MASK = ChunkedLongArray.CHUNK_MASK;
+
+	private final AtomicIntegerArray[] chunks;
+
+	AtomicFloatArray(long length) {
+		chunks = new AtomicIntegerArray[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+		for (int idx = 0; idx < chunks.length; idx++) {
+			chunks[idx] = new AtomicIntegerArray((int) Math.min(CHUNK_SIZE, length - ((long) idx << CHUNK_BITS)));
+		}
+	}
+
+	float get(long index) {
+		return Float.intBitsToFloat(chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & CHUNK_MASK)));
+	}
+
+	void set(long index, float value) {
+		chunks[(int) (index >>> CHUNK_BITS)].lazySet((int) (index & CHUNK_MASK), Float.floatToRawIntBits(value));
+	}
+
+	void add(long index, float delta) {
+		AtomicIntegerArray chunk = chunks[(int) (index >>> CHUNK_BITS)];
+		int offset = (int) (index & CHUNK_MASK);
+		int bits;
+		do {
+			bits = chunk.get(offset);
+		} while (!chunk.compareAndSet(offset, bits, Float.floatToRawIntBits(Float.intBitsToFloat(bits) + delta)));
+	}
+}
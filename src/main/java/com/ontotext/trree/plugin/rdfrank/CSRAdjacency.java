@@ -0,0 +1,254 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.sdk.PluginException;
+
+/**
+ * In-memory compressed sparse row (CSR) representation of the graph. The outgoing edges of node <i>n</i>
+ * are the targets in the range [{@link #begin(long)}, {@link #end(long)}), so the whole graph can be
+ * streamed sequentially in source order.
+ * <p>
+ * The adjacency is created with a {@link Builder} in two passes over the graph - the first one counts the
+ * out-degree of every node and the second one fills in the targets.
+ */
+class CSRAdjacency {
+	private final long nodes;
+	private final ChunkedLongArray offsets;
+	private final Targets targets;
+
+	private CSRAdjacency(long nodes, ChunkedLongArray offsets, Targets targets) {
+		this.nodes = nodes;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	long nodeCount() {
+		return nodes;
+	}
+
+	long edgeCount() {
+		return offsets.get(nodes);
+	}
+
+	/**
+	 * Gets the index of the first outgoing edge of a node
+	 */
+	long begin(long node) {
+		return offsets.get(node);
+	}
+
+	/**
+	 * Gets the index after the last outgoing edge of a node
+	 */
+	long end(long node) {
+		return offsets.get(node + 1);
+	}
+
+	/**
+	 * Gets the target node of an edge
+	 */
+	long target(long edge) {
+		return targets.get(edge);
+	}
+
+	/**
+	 * Estimates the memory in bytes needed for the adjacency of a graph
+	 *
+	 * @param nodes number of nodes in the graph
+	 * @param edges number of edges in the graph
+	 * @param entityBitSize the number of bits needed to store an entity ID
+	 * @return the estimated memory in bytes
+	 */
+	static long estimateMemory(long nodes, long edges, int entityBitSize) {
+		return ChunkedLongArray.bytesFor(nodes + 1) + Targets.bytesPerTarget(entityBitSize) * edges;
+	}
+
+	static class Builder implements AdjacencyBuilder<CSRAdjacency> {
+		private final long nodes;
+		private final int entityBitSize;
+		private final boolean distinct;
+		private final ChunkedLongArray offsets;
+		private Targets targets;
+		private long edges;
+		private long filled;
+
+		Builder(long nodes, int entityBitSize) {
+			this(nodes, entityBitSize, false);
+		}
+
+		/**
+		 * @param distinct whether the duplicate targets of a node are removed when the adjacency is built
+		 */
+		Builder(long nodes, int entityBitSize, boolean distinct) {
+			this.nodes = nodes;
+			this.entityBitSize = entityBitSize;
+			this.distinct = distinct;
+			// offsets[n + 1] holds the out-degree of n during counting
+			offsets = new ChunkedLongArray(nodes + 1);
+		}
+
+		@Override
+		public void count(long from, long to) {
+			offsets.getAndAdd(from + 1, 1);
+			edges++;
+		}
+
+		@Override
+		public long edgeCount() {
+			return edges;
+		}
+
+		@Override
+		public long estimateMemory() {
+			return CSRAdjacency.estimateMemory(nodes, edges, entityBitSize);
+		}
+
+		@Override
+		public void startFill() {
+			// turn the degrees into offsets, offsets[n] points to the first free slot of n
+			long sum = 0;
+			for (long idx = 1; idx <= nodes; idx++) {
+				sum += offsets.get(idx);
+				offsets.set(idx, sum);
+			}
+			targets = Targets.create(edges, entityBitSize);
+		}
+
+		@Override
+		public void fill(long from, long to) {
+			if (filled++ >= edges) {
+				throw new PluginException("The graph has changed while being loaded.");
+			}
+			targets.set(offsets.getAndAdd(from, 1), to);
+		}
+
+		@Override
+		public CSRAdjacency build() {
+			if (filled != edges) {
+				throw new PluginException("The graph has changed while being loaded.");
+			}
+			// each offsets[n] now points to the end of n, shift them to get the beginnings
+			for (long idx = nodes; idx > 0; idx--) {
+				offsets.set(idx, offsets.get(idx - 1));
+			}
+			offsets.set(0, 0);
+			if (distinct) {
+				removeDuplicates();
+			}
+			return new CSRAdjacency(nodes, offsets, targets);
+		}
+
+		/**
+		 * Sorts the targets of every node and moves the distinct ones towards the beginning of the targets
+		 */
+		private void removeDuplicates() {
+			long[] row = new long[16];
+			long begin = 0, next = 0;
+			for (long node = 0; node < nodes; node++) {
+				long end = offsets.get(node + 1);
+				int degree = (int) (end - begin);
+				if (degree > row.length) {
+					row = new long[Math.max(degree, 2 * row.length)];
+				}
+				for (int idx = 0; idx < degree; idx++) {
+					row[idx] = targets.get(begin + idx);
+				}
+				degree = RankUtils.distinct(row, degree);
+				for (int idx = 0; idx < degree; idx++) {
+					targets.set(next + idx, row[idx]);
+				}
+				begin = end;
+				next += degree;
+				offsets.set(node + 1, next);
+			}
+		}
+	}
+
+	/**
+	 * Storage of the edge targets using as few bytes per target as the entity ID size allows
+	 */
+	abstract static class Targets {
+		abstract long get(long index);
+
+		abstract void set(long index, long value);
+
+		static long bytesPerTarget(int entityBitSize) {
+			if (entityBitSize <= 32) {
+				return Integer.BYTES;
+			}
+			if (entityBitSize <= 40) {
+				return Integer.BYTES + 1;
+			}
+			return Long.BYTES;
+		}
+
+		static Targets create(long size, int entityBitSize) {
+			if (entityBitSize <= 32) {
+				return new IntTargets(size);
+			}
+			if (entityBitSize <= 40) {
+				return new PackedTargets(size);
+			}
+			return new LongTargets(size);
+		}
+	}
+
+	private static class IntTargets extends Targets {
+		private final ChunkedIntArray values;
+
+		IntTargets(long size) {
+			values = new ChunkedIntArray(size);
+		}
+
+		@Override
+		long get(long index) {
+			return values.get(index) & 0xFFFFFFFFL;
+		}
+
+		@Override
+		void set(long index, long value) {
+			values.set(index, (int) value);
+		}
+	}
+
+	/**
+	 * 40-bit targets - the lower 32 bits are kept in an int and the upper 8 bits in a separate byte
+	 */
+	private static class PackedTargets extends Targets {
+		private final ChunkedIntArray low;
+		private final ChunkedByteArray high;
+
+		PackedTargets(long size) {
+			low = new ChunkedIntArray(size);
+			high = new ChunkedByteArray(size);
+		}
+
+		@Override
+		long get(long index) {
+			return ((high.get(index) & 0xFFL) << 32) | (low.get(index) & 0xFFFFFFFFL);
+		}
+
+		@Override
+		void set(long index, long value) {
+			low.set(index, (int) value);
+			high.set(index, (byte) (value >>> 32));
+		}
+	}
+
+	private static class LongTargets extends Targets {
+		private final ChunkedLongArray values;
+
+		LongTargets(long size) {
+			values = new ChunkedLongArray(size);
+		}
+
+		@Override
+		long get(long index) {
+			return values.get(index);
+		}
+
+		@Override
+		void set(long index, long value) {
+			values.set(index, value);
+		}
+	}
+}
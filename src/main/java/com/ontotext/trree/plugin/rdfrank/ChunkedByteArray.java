@@ -0,0 +1,34 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+/**
+ * Long-indexed array of bytes kept in fixed-size chunks, so that it is not limited by the maximum size of a
+ * Java array
+ */
+class ChunkedByteArray {
+	private static final int CHUNK_BITS = ChunkedLongArray.CHUNK_BITS;
+	private static final int CHUNK_SIZE = ChunkedLongArray.CHUNK_SIZE;
+	private static final int CHUNK_MASK = ChunkedLongArray.CHUNK_MASK;
+
+	private final long length;
+	private final byte[][] chunks;
+
+	ChunkedByteArray(long length) {
+		this.length = length;
+		chunks = new byte[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS)][];
+		for (int idx = 0; idx < chunks.length; idx++) {
+			chunks[idx] = new byte[(int) Math.min(CHUNK_SIZE, length - ((long) idx << CHUNK_BITS))];
+		}
+	}
+
+	long length() {
+		return length;
+	}
+
+	byte get(long index) {
+		return chunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)];
+	}
+
+	void set(long index, byte value) {
+		chunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)] = value;
+	}
+}
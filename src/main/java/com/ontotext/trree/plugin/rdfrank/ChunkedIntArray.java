@@ -0,0 +1,49 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.Arrays;
+
+/**
+ * Long-indexed array of ints kept in fixed-size chunks, so that it is not limited by the maximum size of a
+ * Java array
+ */
+class ChunkedIntArray {
+	private static final int CHUNK_BITS = ChunkedLongArray.CHUNK_BITS;
+	private static final int CHUNK_SIZE = ChunkedLongArray.CHUNK_SIZE;
+	private static final int CHUNK_MASK = ChunkedLongArray.CHUNK_MASK;
+
+	private final long length;
+	private final int[][] chunks;
+
+	ChunkedIntArray(long length) {
+		this.length = length;
+		chunks = new int[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS)][];
+		for (int idx = 0; idx < chunks.length; idx++) {
+			chunks[idx] = new int[(int) Math.min(CHUNK_SIZE, length - ((long) idx << CHUNK_BITS))];
+		}
+	}
+
+	long length() {
+		return length;
+	}
+
+	int get(long index) {
+		return chunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)];
+	}
+
+	void set(long index, int value) {
+		chunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)] = value;
+	}
+
+	void fill(int value) {
+		for (int[] chunk : chunks) {
+			Arrays.fill(chunk, value);
+		}
+	}
+
+	/**
+	 * Gets the memory in bytes needed for an array of the given length
+	 */
+	static long bytesFor(long length) {
+		return length * Integer.BYTES;
+	}
+}
@@ -0,0 +1,60 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.Arrays;
+
+/**
+ * Long-indexed array of longs kept in fixed-size chunks, so that it is not limited by the maximum size of a
+ * Java array
+ */
+class ChunkedLongArray {
+	static final int CHUNK_BITS = 20;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final long length;
+	private final long[][] chunks;
+
+	ChunkedLongArray(long length) {
+		this.length = length;
+		chunks = new long[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS)][];
+		for (int idx = 0; idx < chunks.length; idx++) {
+			chunks[idx] = new long[(int) Math.min(CHUNK_SIZE, length - ((long) idx << CHUNK_BITS))];
+		}
+	}
+
+	long length() {
+		return length;
+	}
+
+	long get(long index) {
+		return chunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)];
+	}
+
+	void set(long index, long value) {
+		chunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)] = value;
+	}
+
+	/**
+	 * Adds a value to an element and returns the previous value of the element
+	 */
+	long getAndAdd(long index, long delta) {
+		long[] chunk = chunks[(int) (index >>> CHUNK_BITS)];
+		int offset = (int) (index & CHUNK_MASK);
+		long value = chunk[offset];
+		chunk[offset] = value + delta;
+		return value;
+	}
+
+	void fill(long value) {
+		for (long[] chunk : chunks) {
+			Arrays.fill(chunk, value);
+		}
+	}
+
+	/**
+	 * Gets the memory in bytes needed for an array of the given length
+	 */
+	static long bytesFor(long length) {
+		return length * Long.BYTES;
+	}
+}
@@ -65,6 +65,30 @@ public class Configuration {
 		setProperty(MAX_RANK_PROPERTY, Double.toString(value));
 	}
 
+	/**
+	 * Gets the number of iterations of the last computation started from the uniform ranks, 0 if unknown
+	 */
+	public long getColdStartIterations() {
+		String value = properties.getProperty(COLD_START_ITERATIONS.toString(), "");
+		return value.isEmpty() ? 0 : Long.parseLong(value);
+	}
+
+	public void setColdStartIterations(long value) {
+		setProperty(COLD_START_ITERATIONS, Long.toString(value));
+	}
+
+	/**
+	 * Gets the length of the graph delta log whose changes are in the ranks, -1 if unknown
+	 */
+	public long getRankedDelta() {
+		String value = properties.getProperty(RANKED_DELTA.toString(), "");
+		return value.isEmpty() ? -1 : Long.parseLong(value);
+	}
+
+	public void setRankedDelta(long value) {
+		setProperty(RANKED_DELTA, Long.toString(value));
+	}
+
 	public boolean getFilteringEnabled() {
 		return Boolean.parseBoolean(getProperty(FILTERING));
 	}
@@ -177,6 +201,8 @@ public class Configuration {
 		setProperty(INCLUDE_EXPLICIT, "true");
 		setProperty(INCLUDE_IMPLICIT, "true");
 		setProperty(COMPUTED_CONFIG_HASH, "0");
+		setProperty(COLD_START_ITERATIONS, "");
+		setProperty(RANKED_DELTA, "");
 	}
 
 	/**
@@ -223,7 +249,9 @@ public class Configuration {
 		EXCLUDED_GRAPHS_PROPERTY("excludedGraphs"),
 		INCLUDE_EXPLICIT("includeExplicit"),
 		INCLUDE_IMPLICIT("includeImplicit"),
-		COMPUTED_CONFIG_HASH("computedConfigHash");
+		COMPUTED_CONFIG_HASH("computedConfigHash"),
+		COLD_START_ITERATIONS("coldStartIterations"),
+		RANKED_DELTA("rankedDelta");
 
 		private String name;
 
@@ -0,0 +1,198 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.sdk.PluginException;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Log of the edges added to and removed from the graph since its snapshot was recorded. The changes of a
+ * transaction are kept in memory and appended on commit, followed by a commit record with the change of the
+ * statement count of the repository. The records are pairs of longs - the source and the target of an added
+ * edge, the negated source and the target of a removed edge, or 0 and the statement count change of a commit.
+ * The records after the last commit record, e.g. left by a crash while appending, are ignored.
+ */
+class DeltaLog {
+	private static final int RECORD_SIZE = 2 * Long.BYTES;
+
+	private final File file;
+	// the changes of the current transaction, as records
+	private long[] pending = new long[64];
+	private int pendingSize;
+	private long pendingStatements;
+
+	DeltaLog(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Receives the committed changes of a delta log
+	 */
+	interface Visitor {
+		void added(long from, long to);
+
+		void removed(long from, long to);
+
+		/**
+		 * Receives the end of a committed transaction
+		 *
+		 * @param statements the change of the statement count of the repository
+		 * @param length the length of the log up to the end of the transaction
+		 */
+		default void committed(long statements, long length) {
+		}
+	}
+
+	void edgeAdded(long from, long to) {
+		add(from, to);
+	}
+
+	void edgeRemoved(long from, long to) {
+		add(-from, to);
+	}
+
+	/**
+	 * Counts a changed statement of the repository, whether it is an edge of the graph or not
+	 *
+	 * @param change 1 for an added and -1 for a removed statement
+	 */
+	void statementChanged(int change) {
+		pendingStatements += change;
+	}
+
+	/**
+	 * Appends the changes of the current transaction to the log
+	 *
+	 * @return <code>false</code> if the changes could not be appended, the log is deleted then as it no longer
+	 *         matches the graph
+	 */
+	synchronized boolean commit() {
+		if (pendingSize == 0 && pendingStatements == 0) {
+			return true;
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+			for (int idx = 0; idx < pendingSize; idx++) {
+				out.writeLong(pending[idx]);
+			}
+			out.writeLong(0);
+			out.writeLong(pendingStatements);
+			return true;
+		} catch (IOException e) {
+			LoggerFactory.getLogger(getClass()).warn("Cannot append to the graph delta log " + file, e);
+			file.delete();
+			return false;
+		} finally {
+			rollback();
+		}
+	}
+
+	/**
+	 * Drops the changes of the current transaction
+	 */
+	void rollback() {
+		pendingSize = 0;
+		pendingStatements = 0;
+		if (pending.length > 1 << 16) {
+			pending = new long[64];
+		}
+	}
+
+	/**
+	 * Deletes the log, as the graph was recorded again
+	 */
+	synchronized void clear() {
+		file.delete();
+	}
+
+	boolean isEmpty() {
+		return file.length() < RECORD_SIZE;
+	}
+
+	/**
+	 * Gets the length of the log in bytes, 0 if there is no log
+	 */
+	long length() {
+		return file.length();
+	}
+
+	/**
+	 * Reads the committed changes of the log
+	 *
+	 * @return the change of the statement count of the repository
+	 */
+	long read(Visitor visitor) {
+		return read(visitor, 0);
+	}
+
+	/**
+	 * Reads the changes committed after a position of the log
+	 *
+	 * @param position the length of the log up to the end of a transaction, as given to the visitor, not past
+	 *            the end of the log
+	 * @return the change of the statement count of the repository
+	 */
+	long read(Visitor visitor, long position) {
+		if (position > file.length()) {
+			// the log was deleted and started again after the position was taken
+			throw new PluginException("The position " + position + " is past the end of the graph delta log " + file);
+		}
+		if (!file.isFile()) {
+			return 0;
+		}
+		long[] edges = new long[64];
+		int size = 0;
+		long statements = 0;
+		long records = file.length() / RECORD_SIZE;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+			for (long skipped = 0; skipped < position;) {
+				long count = in.skip(position - skipped);
+				if (count <= 0) {
+					throw new IOException("Unexpected end of file");
+				}
+				skipped += count;
+			}
+			for (long record = position / RECORD_SIZE; record < records; record++) {
+				long from = in.readLong();
+				long to = in.readLong();
+				if (from != 0) {
+					if (size == edges.length) {
+						edges = Arrays.copyOf(edges, size * 2);
+					}
+					edges[size++] = from;
+					edges[size++] = to;
+					continue;
+				}
+				// a commit
+				for (int idx = 0; idx < size; idx += 2) {
+					if (edges[idx] > 0) {
+						visitor.added(edges[idx], edges[idx + 1]);
+					} else {
+						visitor.removed(-edges[idx], edges[idx + 1]);
+					}
+				}
+				size = 0;
+				statements += to;
+				visitor.committed(to, (record + 1) * RECORD_SIZE);
+			}
+		} catch (IOException e) {
+			throw new PluginException("Cannot read the graph delta log " + file, e);
+		}
+		return statements;
+	}
+
+	private void add(long from, long to) {
+		if (pendingSize + 2 > pending.length) {
+			pending = Arrays.copyOf(pending, pending.length * 2);
+		}
+		pending[pendingSize++] = from;
+		pending[pendingSize++] = to;
+	}
+}
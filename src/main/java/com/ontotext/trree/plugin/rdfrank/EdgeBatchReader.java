@@ -0,0 +1,215 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.sdk.PluginException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the edges of a graph in batches and maps their entity IDs to positions in the rank vectors. A batch is
+ * valid until the next call to {@link #next()}.
+ * <p>
+ * The pipelined reader reads the graph on a separate thread, which fills a fixed number of batches ahead of
+ * the consumer through a bounded queue. The reader waits for a free batch when the consumer falls behind, so
+ * the memory stays bounded. The partitions of a graph are read on a thread each into the same queue, so the
+ * order of the edges is not defined then.
+ */
+abstract class EdgeBatchReader implements AutoCloseable {
+	/**
+	 * The edges of a batch are in the first {@link #size} elements of the arrays
+	 */
+	static final class Batch {
+		final long[] from = new long[GraphReader.BATCH_SIZE];
+		final long[] to = new long[GraphReader.BATCH_SIZE];
+		int size;
+	}
+
+	/**
+	 * Gets the next batch of edges
+	 *
+	 * @return the batch or <code>null</code> at the end of the graph
+	 */
+	abstract Batch next();
+
+	@Override
+	public abstract void close();
+
+	/**
+	 * Creates a reader of the graph from its beginning on the calling thread
+	 *
+	 * @param nodes the index of the nodes or <code>null</code> if all IDs are nodes
+	 */
+	static EdgeBatchReader sequential(GraphReader gr, NodeIndex nodes) {
+		gr.reset();
+		return new EdgeBatchReader() {
+			private final Batch batch = new Batch();
+
+			@Override
+			Batch next() {
+				return read(gr, nodes, batch) ? batch : null;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * Creates a reader of the graph from its beginning on a separate thread, the graph reader must not be used
+	 * until the created reader is closed
+	 *
+	 * @param nodes the index of the nodes or <code>null</code> if all IDs are nodes
+	 * @param depth the number of batches read ahead
+	 */
+	static EdgeBatchReader pipelined(GraphReader gr, NodeIndex nodes, int depth) {
+		return new Pipelined(Collections.singletonList(gr), nodes, depth);
+	}
+
+	/**
+	 * Creates a reader of the partitions of a graph from their beginning on a thread each, the partitions are
+	 * closed when read
+	 *
+	 * @param nodes the index of the nodes or <code>null</code> if all IDs are nodes
+	 * @param depth the number of batches read ahead
+	 * @see GraphReader#partition(int)
+	 */
+	static EdgeBatchReader parallel(List<GraphReader> partitions, NodeIndex nodes, int depth) {
+		return new Pipelined(partitions, nodes, depth);
+	}
+
+	/**
+	 * Fills a batch with the next edges of the graph
+	 *
+	 * @return <code>false</code> if there are no more edges
+	 */
+	private static boolean read(GraphReader gr, NodeIndex nodes, Batch batch) {
+		batch.size = gr.nextBatch(batch.from, batch.to);
+		if (nodes != null) {
+			for (int idx = 0; idx < batch.size; idx++) {
+				batch.from[idx] = nodes.dense(batch.from[idx]);
+				batch.to[idx] = nodes.dense(batch.to[idx]);
+			}
+		}
+		return batch.size > 0;
+	}
+
+	private static class Pipelined extends EdgeBatchReader {
+		// the empty batch that marks the end of a partition or a failure of its reader
+		private static final Batch END = new Batch();
+
+		private final BlockingQueue<Batch> filled;
+		private final BlockingQueue<Batch> free;
+		private final List<Thread> readers;
+		private volatile boolean closed;
+		private volatile Throwable failure;
+		private Batch current;
+		private int running;
+		private boolean finished;
+
+		Pipelined(List<GraphReader> partitions, NodeIndex nodes, int depth) {
+			int batches = depth + partitions.size();
+			// room for all batches and the ends
+			filled = new ArrayBlockingQueue<>(batches + partitions.size());
+			free = new ArrayBlockingQueue<>(batches);
+			// one batch for the consumer and the rest for the readers
+			for (int idx = 0; idx < batches; idx++) {
+				free.add(new Batch());
+			}
+			readers = new ArrayList<>(partitions.size());
+			for (GraphReader gr : partitions) {
+				Thread reader = new Thread(() -> {
+					try {
+						gr.reset();
+						while (!closed) {
+							Batch batch = free.take();
+							if (closed || !read(gr, nodes, batch)) {
+								break;
+							}
+							filled.put(batch);
+						}
+					} catch (Throwable t) {
+						failure = t;
+					} finally {
+						if (partitions.size() > 1) {
+							gr.close();
+						}
+						filled.offer(END);
+					}
+				}, "rdfrank-graph-reader-" + readers.size());
+				reader.setDaemon(true);
+				readers.add(reader);
+			}
+			running = readers.size();
+			for (Thread reader : readers) {
+				reader.start();
+			}
+		}
+
+		@Override
+		Batch next() {
+			if (finished) {
+				return null;
+			}
+			if (current != null) {
+				free.add(current);
+				current = null;
+			}
+			Batch batch;
+			do {
+				try {
+					batch = filled.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new PluginException("Interrupted while reading the graph", e);
+				}
+			} while (batch == END && --running > 0 && failure == null);
+			if (batch == END) {
+				finished = true;
+				Throwable t = failure;
+				if (t instanceof RuntimeException) {
+					throw (RuntimeException) t;
+				}
+				if (t instanceof Error) {
+					throw (Error) t;
+				}
+				if (t != null) {
+					throw new PluginException("Failed reading the graph", t);
+				}
+				return null;
+			}
+			current = batch;
+			return batch;
+		}
+
+		/**
+		 * Stops the reader threads, they are not interrupted as they may be reading files of the repository
+		 */
+		@Override
+		public void close() {
+			closed = true;
+			boolean interrupted = false;
+			for (Thread reader : readers) {
+				while (reader.isAlive()) {
+					// free the filled batches, so that the readers can notice that they are closed
+					for (Batch batch; (batch = filled.poll()) != null;) {
+						if (batch != END) {
+							free.add(batch);
+						}
+					}
+					try {
+						reader.join(10);
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.sdk.PluginException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Binary file holding the edges of the graph sorted by source, so that an iteration can stream it
+ * sequentially and keep only the rank vectors in memory. The file is a sequence of records, one for each node
+ * with outgoing edges in node order - the node, its out-degree and its targets, all of them words of 4 or 8
+ * bytes depending on the node bit size.
+ * <p>
+ * The file is read in segments into two direct buffers, reused by all passes, and the next segment is loaded in
+ * the background while the current one is being processed. Only one pass may be in progress at a time.
+ */
+class EdgeFile implements AutoCloseable {
+	// the segments are a multiple of the word size, so a word never spans two segments
+	private static final int SEGMENT_BITS = 24;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+	// the buffer of the writer
+	static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+	private final File file;
+	private final long nodes;
+	private final long edges;
+	private final int wordSize;
+	private final long length;
+	private final ExecutorService readAhead;
+	private FileChannel channel;
+	private ByteBuffer[] buffers;
+
+	private EdgeFile(File file, long nodes, long edges, int wordSize, long length) {
+		this.file = file;
+		this.nodes = nodes;
+		this.edges = edges;
+		this.wordSize = wordSize;
+		this.length = length;
+		readAhead = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "rdfrank-read-ahead");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	long nodeCount() {
+		return nodes;
+	}
+
+	long edgeCount() {
+		return edges;
+	}
+
+	/**
+	 * Gets the size of the file in bytes
+	 */
+	long length() {
+		return length;
+	}
+
+	/**
+	 * Starts a new sequential pass over the file
+	 */
+	Scanner scan() {
+		if (channel == null) {
+			try {
+				channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			} catch (IOException e) {
+				throw new PluginException("Cannot read the edge file " + file, e);
+			}
+			int size = (int) Math.min(SEGMENT_SIZE, length);
+			buffers = new ByteBuffer[] { ByteBuffer.allocateDirect(size), ByteBuffer.allocateDirect(size) };
+		}
+		return new Scanner();
+	}
+
+	/**
+	 * Deletes the file
+	 */
+	@Override
+	public void close() {
+		readAhead.shutdownNow();
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// deleted anyway
+			}
+			buffers = null;
+		}
+		if (!file.delete() && file.exists()) {
+			file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Gets the number of bytes of a word in the file of the given node bit size
+	 */
+	static int wordSize(int nodeBitSize) {
+		return nodeBitSize <= 32 ? Integer.BYTES : Long.BYTES;
+	}
+
+	/**
+	 * Sequential reader of the records of the file
+	 */
+	class Scanner {
+		private long position;
+		private ByteBuffer segment;
+		private Future<ByteBuffer> nextSegment;
+		// the buffer the next segment is read into
+		private int nextBuffer;
+		private long source, degree;
+
+		Scanner() {
+			nextSegment = readAhead.submit(() -> read(0, buffers[0]));
+		}
+
+		/**
+		 * Goes to the record of the next node with outgoing edges
+		 *
+		 * @return <code>false</code> if there are no more records
+		 */
+		boolean nextSource() {
+			if (position >= length) {
+				return false;
+			}
+			source = nextWord();
+			degree = nextWord();
+			return true;
+		}
+
+		/**
+		 * Gets the node of the current record
+		 */
+		long source() {
+			return source;
+		}
+
+		/**
+		 * Gets the out-degree of the node of the current record, the number of targets that follow
+		 */
+		long degree() {
+			return degree;
+		}
+
+		/**
+		 * Reads the next target of the current record
+		 */
+		long nextTarget() {
+			return nextWord();
+		}
+
+		private long nextWord() {
+			int offset = (int) (position & SEGMENT_MASK);
+			if (offset == 0) {
+				nextSegment();
+			}
+			position += wordSize;
+			return wordSize == Integer.BYTES ? segment.getInt(offset) & 0xFFFFFFFFL : segment.getLong(offset);
+		}
+
+		private void nextSegment() {
+			try {
+				segment = nextSegment.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new PluginException("Interrupted while reading the edge file", e);
+			} catch (ExecutionException e) {
+				throw new PluginException("Cannot read the edge file " + file, e.getCause());
+			}
+			// the other buffer held the previous segment, which is done with
+			nextBuffer ^= 1;
+			long next = position + SEGMENT_SIZE;
+			ByteBuffer buffer = buffers[nextBuffer];
+			nextSegment = next < length ? readAhead.submit(() -> read(next, buffer)) : null;
+		}
+
+		private ByteBuffer read(long start, ByteBuffer buffer) throws IOException {
+			buffer.clear().limit((int) Math.min(SEGMENT_SIZE, length - start));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of the edge file");
+				}
+			}
+			return buffer;
+		}
+	}
+
+	/**
+	 * Writes the records of the edge file sequentially, the nodes have to be written in increasing order
+	 */
+	static class Writer implements AutoCloseable {
+		private final File file;
+		private final long nodes;
+		private final int wordSize;
+		private final DataOutputStream out;
+		private long edges;
+		private long length;
+		private boolean finished;
+
+		Writer(File file, long nodes, int nodeBitSize) {
+			this.file = file;
+			this.nodes = nodes;
+			wordSize = wordSize(nodeBitSize);
+			try {
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE));
+			} catch (IOException e) {
+				throw new PluginException("Cannot create the edge file " + file, e);
+			}
+		}
+
+		/**
+		 * Writes the record of a node
+		 *
+		 * @param targets the array holding the targets of the node in its first <code>degree</code> elements
+		 */
+		void write(long source, long[] targets, int degree) throws IOException {
+			writeWord(source);
+			writeWord(degree);
+			for (int idx = 0; idx < degree; idx++) {
+				writeWord(targets[idx]);
+			}
+			edges += degree;
+			length += (2L + degree) * wordSize;
+		}
+
+		/**
+		 * Finishes writing and opens the file for reading
+		 */
+		EdgeFile finish() throws IOException {
+			out.close();
+			finished = true;
+			return new EdgeFile(file, nodes, edges, wordSize, length);
+		}
+
+		/**
+		 * Deletes the file if it was not finished
+		 */
+		@Override
+		public void close() {
+			if (!finished) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// deleted anyway
+				}
+				file.delete();
+			}
+		}
+
+		private void writeWord(long value) throws IOException {
+			if (wordSize == Integer.BYTES) {
+				out.writeInt((int) value);
+			} else {
+				out.writeLong(value);
+			}
+		}
+	}
+}
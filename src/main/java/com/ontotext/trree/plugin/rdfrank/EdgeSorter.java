@@ -0,0 +1,333 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.sdk.PluginException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the edges of the graph by source into an {@link EdgeFile} with an external merge sort. The edges are
+ * buffered in primitive arrays, each full buffer is sorted in parallel and spilled as a run to the scratch
+ * directory and finally the runs are merged into the edge file. If all edges fit in the buffer they are written
+ * to the edge file directly. The buffer grows up to the memory given to the sorter, including the copy made
+ * while growing. The runs are merged in several passes if there are more of them than the merge buffers that fit
+ * in that memory once the sort buffer is released.
+ * <p>
+ * The sort key of an edge is its source followed by its position in the buffer, so only the keys are sorted
+ * and the targets are looked up by position. The order of the targets of a node does not matter for the
+ * iterations, they are sorted only to remove the duplicate edges if needed.
+ */
+class EdgeSorter implements AutoCloseable {
+	// the buffered key and target of an edge
+	static final int BYTES_PER_EDGE = 2 * Long.BYTES;
+	private static final int MIN_BUFFER_SIZE = 1 << 12;
+	private static final int RUN_BUFFER_SIZE = 1 << 16;
+	private static final int MAX_FAN_IN = 128;
+
+	private final File scratchDir;
+	private final long nodes;
+	private final int nodeBitSize;
+	private final int wordSize;
+	private final boolean distinct;
+	private final long memory;
+	// the number of bits of the key that hold the position in the buffer
+	private final int positionBits;
+	// the maximal number of edges in the buffer and in its copy while growing
+	private final long limit;
+	// the maximal number of edges in the buffer
+	private final int capacity;
+	private long[] keys;
+	private long[] targets;
+	private int size;
+	private long edges;
+	private final List<File> runs = new ArrayList<>();
+	private int runCount;
+	private int mergeCount;
+
+	/**
+	 * @param scratchDir the directory for the runs
+	 * @param nodes the number of nodes in the graph
+	 * @param memory the memory in bytes for the buffer and the merge buffers
+	 * @param distinct whether the duplicate edges are written once
+	 */
+	EdgeSorter(File scratchDir, long nodes, int nodeBitSize, long memory, boolean distinct) {
+		this.scratchDir = scratchDir;
+		this.nodes = nodes;
+		this.nodeBitSize = nodeBitSize;
+		this.distinct = distinct;
+		this.memory = memory;
+		wordSize = EdgeFile.wordSize(nodeBitSize);
+		// the keys are kept positive to be sorted as signed values
+		positionBits = Math.min(31, 63 - (64 - Long.numberOfLeadingZeros(nodes)));
+		// the output buffer of a run is left out of the sort buffer
+		limit = Math.max(MIN_BUFFER_SIZE, (memory - RUN_BUFFER_SIZE) / BYTES_PER_EDGE);
+		capacity = (int) Math.min(limit, Math.min(1L << positionBits, Integer.MAX_VALUE - 8));
+		// the buffer grows up to the capacity, so that a small graph does not take all the memory
+		keys = new long[Math.min(capacity, MIN_BUFFER_SIZE)];
+		targets = new long[keys.length];
+	}
+
+	void add(long from, long to) {
+		if (size == keys.length) {
+			// the old and the new buffer are both held while copying
+			int length = (int) Math.min(capacity, Math.min(2L * size, limit - size));
+			if (length > size) {
+				keys = Arrays.copyOf(keys, length);
+				targets = Arrays.copyOf(targets, length);
+			} else {
+				spill();
+			}
+		}
+		keys[size] = from << positionBits | size;
+		targets[size] = to;
+		size++;
+		edges++;
+	}
+
+	long edgeCount() {
+		return edges;
+	}
+
+	/**
+	 * Gets the number of runs spilled to the scratch directory
+	 */
+	int getRunCount() {
+		return runCount;
+	}
+
+	/**
+	 * Gets the number of merges of the runs, the last of which writes the edge file
+	 */
+	int getMergeCount() {
+		return mergeCount;
+	}
+
+	/**
+	 * Writes all added edges to an edge file
+	 */
+	EdgeFile finish(File file) {
+		try (EdgeFile.Writer writer = new EdgeFile.Writer(file, nodes, nodeBitSize)) {
+			if (runs.isEmpty()) {
+				sort();
+				write(writer);
+			} else {
+				if (size > 0) {
+					spill();
+				}
+				// the memory of the sort buffer goes to the merge buffers
+				keys = targets = null;
+				merge(writer);
+			}
+			return writer.finish();
+		} catch (IOException e) {
+			throw new PluginException("Cannot write the edge file " + file, e);
+		}
+	}
+
+	/**
+	 * Deletes the runs
+	 */
+	@Override
+	public void close() {
+		for (File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+	}
+
+	private void sort() {
+		Arrays.parallelSort(keys, 0, size);
+	}
+
+	private long source(int index) {
+		return keys[index] >>> positionBits;
+	}
+
+	private long target(int index) {
+		return targets[(int) (keys[index] & ((1L << positionBits) - 1))];
+	}
+
+	/**
+	 * Sorts the buffered edges and writes them to a new run
+	 */
+	private void spill() {
+		sort();
+		try {
+			try (DataOutputStream out = createRun()) {
+				for (int idx = 0; idx < size; idx++) {
+					writeWord(out, source(idx));
+					writeWord(out, target(idx));
+				}
+			}
+		} catch (IOException e) {
+			throw new PluginException("Cannot write a sort run to " + scratchDir, e);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Adds a new run to the scratch directory
+	 */
+	private DataOutputStream createRun() throws IOException {
+		scratchDir.mkdirs();
+		File run = File.createTempFile("rdfrank-run", ".tmp", scratchDir);
+		runs.add(run);
+		runCount++;
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER_SIZE));
+	}
+
+	/**
+	 * Writes the sorted buffer as edge file records
+	 */
+	private void write(EdgeFile.Writer writer) throws IOException {
+		Records records = new Records(writer);
+		for (int idx = 0; idx < size; idx++) {
+			records.add(source(idx), target(idx));
+		}
+		records.finish();
+	}
+
+	/**
+	 * Merges the runs as edge file records. The oldest runs are merged into a new run until few enough of them
+	 * are left to be merged at once, each run taking a buffer and the edge file writer a buffer of its own.
+	 */
+	private void merge(EdgeFile.Writer writer) throws IOException {
+		int fanIn = (int) Math.max(2,
+				Math.min(MAX_FAN_IN, (memory - EdgeFile.WRITE_BUFFER_SIZE) / RUN_BUFFER_SIZE));
+		while (runs.size() > fanIn) {
+			List<File> inputs = new ArrayList<>(runs.subList(0, fanIn));
+			try (DataOutputStream out = createRun()) {
+				merge(inputs, (source, target) -> {
+					writeWord(out, source);
+					writeWord(out, target);
+				});
+			}
+			runs.subList(0, fanIn).clear();
+			for (File input : inputs) {
+				input.delete();
+			}
+		}
+		Records records = new Records(writer);
+		merge(runs, records::add);
+		records.finish();
+	}
+
+	private void merge(List<File> files, EdgeConsumer consumer) throws IOException {
+		mergeCount++;
+		PriorityQueue<Run> queue = new PriorityQueue<>(files.size(), Comparator.comparingLong(run -> run.source));
+		try {
+			for (File file : files) {
+				Run run = new Run(file);
+				if (run.next()) {
+					queue.add(run);
+				} else {
+					run.close();
+				}
+			}
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				consumer.accept(run.source, run.target);
+				if (run.next()) {
+					queue.add(run);
+				} else {
+					run.close();
+				}
+			}
+		} finally {
+			for (Run run : queue) {
+				run.close();
+			}
+		}
+	}
+
+	private void writeWord(DataOutputStream out, long value) throws IOException {
+		if (wordSize == Integer.BYTES) {
+			out.writeInt((int) value);
+		} else {
+			out.writeLong(value);
+		}
+	}
+
+	private interface EdgeConsumer {
+		void accept(long source, long target) throws IOException;
+	}
+
+	/**
+	 * Groups the edges sorted by source into edge file records
+	 */
+	private class Records {
+		private final EdgeFile.Writer writer;
+		private long[] row = new long[16];
+		private int degree;
+		private long source = -1;
+
+		Records(EdgeFile.Writer writer) {
+			this.writer = writer;
+		}
+
+		void add(long from, long to) throws IOException {
+			if (degree > 0 && from != source) {
+				finish();
+			}
+			source = from;
+			if (degree == row.length) {
+				row = Arrays.copyOf(row, 2 * degree);
+			}
+			row[degree++] = to;
+		}
+
+		/**
+		 * Writes the record of the last source
+		 */
+		void finish() throws IOException {
+			if (degree > 0) {
+				writer.write(source, row, distinct ? RankUtils.distinct(row, degree) : degree);
+				degree = 0;
+			}
+		}
+	}
+
+	/**
+	 * Sequential reader of the edges of a run
+	 */
+	private class Run implements AutoCloseable {
+		private final DataInputStream in;
+		private long remaining;
+		long source, target;
+
+		Run(File file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_BUFFER_SIZE));
+			remaining = file.length() / (2 * wordSize);
+		}
+
+		boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			source = readWord();
+			target = readWord();
+			return true;
+		}
+
+		private long readWord() throws IOException {
+			return wordSize == Integer.BYTES ? in.readInt() & 0xFFFFFFFFL : in.readLong();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.function.LongPredicate;
+
+/**
+ * A set of entity IDs kept as a bitmap with one bit per ID
+ */
+class EntityBitmap {
+	private final long size;
+	private final ChunkedLongArray words;
+	private long count;
+
+	EntityBitmap(long size) {
+		this.size = size;
+		words = new ChunkedLongArray(wordCount(size));
+	}
+
+	/**
+	 * Creates the bitmap of the IDs that match a predicate. The IDs of a previous bitmap of the same predicate
+	 * are copied from it, so only the new IDs are tested.
+	 *
+	 * @param size the number of IDs
+	 * @param predicate the test of an ID
+	 * @param previous a previous bitmap of the predicate or <code>null</code>
+	 */
+	static EntityBitmap of(long size, LongPredicate predicate, EntityBitmap previous) {
+		EntityBitmap bitmap = new EntityBitmap(size);
+		long known = 0;
+		if (previous != null && previous.size <= size) {
+			// whole words only, the rest of the IDs are tested again
+			long copied = previous.size >>> 6;
+			for (long word = 0; word < copied; word++) {
+				bitmap.words.set(word, previous.words.get(word));
+				bitmap.count += Long.bitCount(previous.words.get(word));
+			}
+			known = copied << 6;
+		}
+		for (long id = known; id < size; id++) {
+			if (predicate.test(id)) {
+				bitmap.set(id);
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Gets the number of IDs covered by the bitmap
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of IDs in the set
+	 */
+	long count() {
+		return count;
+	}
+
+	boolean get(long id) {
+		return id < size && (words.get(id >>> 6) & (1L << id)) != 0;
+	}
+
+	void set(long id) {
+		long word = id >>> 6;
+		long value = words.get(word);
+		if ((value & (1L << id)) == 0) {
+			words.set(word, value | (1L << id));
+			count++;
+		}
+	}
+
+	/**
+	 * Gets the number of IDs in the set that are lower than the given one
+	 */
+	long countBelow(long id) {
+		long below = 0;
+		long last = id >>> 6;
+		for (long word = 0; word < last; word++) {
+			below += Long.bitCount(words.get(word));
+		}
+		return below + Long.bitCount(words.get(last) & ((1L << id) - 1));
+	}
+
+	/**
+	 * Gets the word holding the bits of the IDs [64 * index, 64 * index + 63]
+	 */
+	long word(long index) {
+		return words.get(index);
+	}
+
+	long wordCount() {
+		return words.length();
+	}
+
+	/**
+	 * Estimates the memory in bytes needed for a bitmap of the given number of IDs
+	 */
+	static long estimateMemory(long size) {
+		return ChunkedLongArray.bytesFor(wordCount(size));
+	}
+
+	private static long wordCount(long size) {
+		return (size + 63) >>> 6;
+	}
+}
@@ -1,6 +1,7 @@
 package com.ontotext.trree.plugin.rdfrank;
 
 import com.ontotext.trree.sdk.RDFRankProvider;
+import com.ontotext.trree.util.BigFloatArray;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
@@ -8,11 +9,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * A class providing reading access to the rank storage binary files. It supports reading of rank values and
  * the rank thresholds. The class methods are not thread-safe (except for {@link #getThresholds()}) so the
  * respective synchronization care should be taken when using the class.
+ * <p>
+ * The pages are read from the file under a shared lock, so that a change of the file made through
+ * {@link #update(Update)} is never seen half-done.
  */
 class FileRankReader {
 	private static final int SIZE_OF_RECORD = 12;
@@ -27,6 +33,7 @@ class FileRankReader {
 
 	private double[] thresholds;
 	private Page[] pages;
+	private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
 
 	private static class Page {
 		private boolean isInitialized;
@@ -39,6 +46,26 @@ class FileRankReader {
 		reload();
 	}
 
+	/**
+	 * Change of the ranks file
+	 */
+	interface Update {
+		void run() throws IOException;
+	}
+
+	/**
+	 * Changes the ranks file while no page is being read from it and reloads it
+	 */
+	void update(Update update) throws IOException {
+		fileLock.writeLock().lock();
+		try {
+			update.run();
+			reload();
+		} finally {
+			fileLock.writeLock().unlock();
+		}
+	}
+
 	/**
 	 * Reloads the ranks file contents
 	 */
@@ -123,6 +150,7 @@ class FileRankReader {
 		synchronized (page) {
 			if (!page.isInitialized) {
 				// read the page contents from disk
+				fileLock.readLock().lock();
 				try (FileInputStream fis = new FileInputStream(file)) {
 					fis.getChannel().position(headerSize + ((long) pageIndex) * PAGE_SIZE * SIZE_OF_RECORD);
 					try (DataInputStream in = new DataInputStream(new BufferedInputStream(fis))) {
@@ -132,6 +160,8 @@ class FileRankReader {
 							page.ranks[idx] = in.readDouble();
 						}
 					}
+				} finally {
+					fileLock.readLock().unlock();
 				}
 				// mark the page as initialized
 				page.isInitialized = true;
@@ -151,6 +181,37 @@ class FileRankReader {
 		return thresholds;
 	}
 	
+	/**
+	 * Reads the stored ranks sequentially into an array, skipping the page cache
+	 *
+	 * @param ranks the array to fill, ranks of IDs beyond its length are not read
+	 * @param nodes the index of the IDs to read at their dense positions or <code>null</code> to read all IDs
+	 *            at their own positions
+	 * @return the number of IDs read
+	 */
+	long readAll(BigFloatArray ranks, NodeIndex nodes) throws IOException {
+		long count = Math.min(size, nodes == null ? ranks.length() : nodes.size());
+		fileLock.readLock().lock();
+		try (FileInputStream fis = new FileInputStream(file)) {
+			fis.getChannel().position(headerSize);
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 1 << 16))) {
+				long dense = 0;
+				for (long idx = 0; idx < count; idx++) {
+					in.readInt(); // the node ID is the index of the record
+					float rank = (float) in.readDouble();
+					if (nodes == null) {
+						ranks.set(idx, rank);
+					} else if (nodes.contains(idx)) {
+						ranks.set(dense++, rank);
+					}
+				}
+			}
+		} finally {
+			fileLock.readLock().unlock();
+		}
+		return count;
+	}
+
 	double read(long id) {
 		if (id < 1 || id >= size) {
 			return RDFRankProvider.NULL_RANK;
@@ -1,18 +1,36 @@
 package com.ontotext.trree.plugin.rdfrank;
 
-import com.ontotext.trree.util.BigFloatArray;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.LoggerFactory;
 
 import com.ontotext.trree.util.FileUtils;
 
 /**
  * Provides writing functionality for RDFRank plug-in storage file
+ * <p>
+ * The ranks computed incrementally are written as a segment - a staging file holding the length of the rank
+ * file and the new records, which is renamed atomically once complete and only then copied into the rank file.
+ * A crash before the rename leaves the rank file as it was, a crash after it is recovered by copying the
+ * segment again, as the rank file is first cut back to the length it had when the segment was started.
  */
 class FileRankWriter {
+	private static final String SEGMENT_SUFFIX = ".segment";
+	private static final String STAGING_SUFFIX = ".staging";
+	private static final int RECORD_SIZE = Integer.BYTES + Double.BYTES;
+	private static final int BUFFER_SIZE = RECORD_SIZE << 13;
+
 	private String rankFile;
 
 	FileRankWriter(String rankFile) {
@@ -25,7 +43,7 @@ class FileRankWriter {
 	 * @param ranks
 	 *            array of ranks
 	 */
-	void write(BigFloatArray ranks) {
+	void write(RankVector ranks) {
 		DataOutputStream dos = null;
 		try {
 			dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(rankFile))));
@@ -39,8 +57,9 @@ class FileRankWriter {
 				dos.writeDouble(threshold);
 			}
 			// read and write the PageRanks
-			for (int node = 0; node < ranks.length(); node++) {
-				dos.writeInt(node);
+			for (long node = 0; node < ranks.length(); node++) {
+				assert node <= Integer.MAX_VALUE;
+				dos.writeInt((int) node);
 				dos.writeDouble(ranks.get(node));
 			}
 		} catch (IOException e) {
@@ -49,4 +68,147 @@ class FileRankWriter {
 			FileUtils.closeQuietly(dos);
 		}
 	}
+
+	/**
+	 * Starts a segment of ranks to append to the file or to overwrite in it
+	 */
+	Segment segment() throws IOException {
+		return new Segment();
+	}
+
+	/**
+	 * Completes a segment left by a crash after it was committed and drops an uncommitted one
+	 */
+	void recover() throws IOException {
+		Files.deleteIfExists(Paths.get(rankFile + SEGMENT_SUFFIX + STAGING_SUFFIX));
+		if (Files.exists(Paths.get(rankFile + SEGMENT_SUFFIX))) {
+			LoggerFactory.getLogger(getClass()).info("Completing the ranks segment interrupted by a crash");
+			apply();
+		}
+	}
+
+	/**
+	 * Copies the committed segment into the rank file and deletes it
+	 */
+	private void apply() throws IOException {
+		Path segment = Paths.get(rankFile + SEGMENT_SUFFIX);
+		try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(Paths.get(rankFile), StandardOpenOption.READ,
+						StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			readFully(in, buffer, Long.BYTES, 0);
+			long length = buffer.getLong();
+			// the magic, the version and the thresholds
+			readFully(out, buffer, Integer.BYTES, 2 * Integer.BYTES);
+			long headerSize = 3 * Integer.BYTES + (long) buffer.getInt() * Double.BYTES;
+			if (out.size() < length) {
+				LoggerFactory.getLogger(getClass()).warn("The ranks segment does not match the rank file " + rankFile
+						+ ", dropping it");
+				Files.delete(segment);
+				return;
+			}
+			// drops the part of the segment copied before a crash
+			out.truncate(length);
+
+			ByteBuffer run = ByteBuffer.allocate(BUFFER_SIZE);
+			long runPosition = -1;
+			long records = (in.size() - Long.BYTES) / RECORD_SIZE;
+			long record = 0;
+			while (record < records) {
+				int batch = (int) Math.min(records - record, BUFFER_SIZE / RECORD_SIZE);
+				readFully(in, buffer, batch * RECORD_SIZE, Long.BYTES + record * RECORD_SIZE);
+				for (int idx = 0; idx < batch; idx++) {
+					int id = buffer.getInt(idx * RECORD_SIZE);
+					long position = headerSize + (long) id * RECORD_SIZE;
+					// the consecutive records are written at once
+					if (run.position() > 0 && (runPosition + run.position() != position || !run.hasRemaining())) {
+						writeFully(out, run, runPosition);
+					}
+					if (run.position() == 0) {
+						runPosition = position;
+					}
+					run.put(buffer.array(), idx * RECORD_SIZE, RECORD_SIZE);
+				}
+				record += batch;
+			}
+			if (run.position() > 0) {
+				writeFully(out, run, runPosition);
+			}
+			out.force(true);
+		}
+		Files.delete(segment);
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, int size, long position) throws IOException {
+		buffer.clear().limit(size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		buffer.flip();
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Segment of ranks being written to a staging file. The ranks of the IDs already in the rank file overwrite
+	 * them and the ranks of the IDs after them are appended, the IDs have to be given in ascending order.
+	 */
+	class Segment implements AutoCloseable {
+		private final Path staging = Paths.get(rankFile + SEGMENT_SUFFIX + STAGING_SUFFIX);
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private long position;
+		private boolean committed;
+
+		private Segment() throws IOException {
+			channel = FileChannel.open(staging, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+			buffer.putLong(new File(rankFile).length());
+		}
+
+		void put(long id, double rank) throws IOException {
+			assert id <= Integer.MAX_VALUE;
+			if (buffer.remaining() < RECORD_SIZE) {
+				flush();
+			}
+			buffer.putInt((int) id);
+			buffer.putDouble(rank);
+		}
+
+		/**
+		 * Publishes the segment and copies it into the rank file. The readers of the file must not read it
+		 * meanwhile, see {@link FileRankReader#update(FileRankReader.Update)}.
+		 */
+		void commit() throws IOException {
+			flush();
+			channel.force(true);
+			channel.close();
+			Files.move(staging, Paths.get(rankFile + SEGMENT_SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			committed = true;
+			apply();
+		}
+
+		private void flush() throws IOException {
+			long size = buffer.position();
+			writeFully(channel, buffer, position);
+			position += size;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!committed) {
+				channel.close();
+				Files.deleteIfExists(staging);
+			}
+		}
+	}
 }
@@ -4,28 +4,65 @@ import com.ontotext.trree.sdk.Entities;
 import com.ontotext.trree.sdk.StatementIterator;
 import com.ontotext.trree.sdk.Statements;
 
+import org.slf4j.LoggerFactory;
+
 import java.util.*;
 
+/**
+ * Reads the statements matching the included predicates and graphs, which are not excluded. The statement
+ * patterns are read one after another, each opened when the previous one is drained.
+ * <p>
+ * The patterns are planned on the first reset with the estimated sizes of the repository. The access paths
+ * are a pattern for each pair of an included predicate and an included graph, a pattern for each included
+ * predicate or for each included graph, checking the other part of the pair on every statement, or a scan of
+ * all statements. The path reading the least statements, counting the opening of each pattern as well, is
+ * chosen. The excluded predicates and graphs are left out of the included ones in advance.
+ */
 public class FilteredGraphReader extends GraphReader {
 
+	/**
+	 * The ways to read the statements of the filter
+	 */
+	enum AccessPath {
+		EMPTY, PAIRS, PREDICATES, GRAPHS, SCAN
+	}
+
 	private static final Set<Long> EMPTY = Collections.emptySet();
+	// the maximal number of predicate and graph pairs whose sizes are estimated
+	private static final int MAX_PAIR_PATTERNS = 4096;
+	// the cost of opening a pattern in read statements
+	private static final long PATTERN_COST = 1000;
 
 	private Statements statements;
 	private Entities entities;
-	private Collection<StatementIterator> statementIterators;
-	private Iterator<StatementIterator> statementIteratorsIterator;
+	private Iterator<long[]> patternIterator;
 	private StatementIterator currentStatementIterator = StatementIterator.EMPTY;
 
 	private Set<Long> includedPredicates;
-	private Set<Long> excludedPredicates;
+	private LongSet excludedPredicates;
 
 	private Set<Long> includedGraphs;
-	private Set<Long> excludedGraphs;
+	private LongSet excludedGraphs;
+
+	// the predicate, graph and estimated size of the patterns to read, null until planned
+	private List<long[]> patterns;
+	private AccessPath accessPath;
+	private long cost;
+	// the predicates or graphs checked on each statement, when the patterns do not match them
+	private LongSet requiredPredicates;
+	private LongSet requiredGraphs;
 
 	private long object;
+	// the included predicates and graphs that are not excluded, null if all are included, built on first use
+	private LongSet acceptedPredicates;
+	private LongSet acceptedGraphs;
+	private boolean accepting;
 
 	private boolean includeImplicit;
 	private boolean includeExplicit;
+	// the last status seen and whether it excludes the statement, a scan sees very few distinct statuses
+	private int lastStatus;
+	private boolean lastStatusExcluded;
 
 	private long size = 0;
 
@@ -33,12 +70,36 @@ public class FilteredGraphReader extends GraphReader {
 		this.statements = statements;
 		this.entities = entities;
 		this.includedPredicates = includedPredicates != null ? includedPredicates : EMPTY;
-		this.excludedPredicates = excludedPredicates != null ? excludedPredicates : EMPTY;
+		this.excludedPredicates = LongSet.of(excludedPredicates);
 		this.includedGraphs = includedGraphs != null ? includedGraphs : EMPTY;
-		this.excludedGraphs = excludedGraphs != null ? excludedGraphs : EMPTY;
+		this.excludedGraphs = LongSet.of(excludedGraphs);
 		this.includeImplicit = includeImplicit;
 		this.includeExplicit = includeExplicit;
 		this.object = object;
+		lastStatus = 0;
+		lastStatusExcluded = isExcluded(StatementIterator.EMPTY);
+	}
+
+	/**
+	 * Creates a reader of some of the patterns of another reader
+	 */
+	private FilteredGraphReader(FilteredGraphReader reader, List<long[]> patterns) {
+		statements = reader.statements;
+		entities = reader.entities;
+		includedPredicates = reader.includedPredicates;
+		excludedPredicates = reader.excludedPredicates;
+		includedGraphs = reader.includedGraphs;
+		excludedGraphs = reader.excludedGraphs;
+		includeImplicit = reader.includeImplicit;
+		includeExplicit = reader.includeExplicit;
+		object = reader.object;
+		lastStatus = reader.lastStatus;
+		lastStatusExcluded = reader.lastStatusExcluded;
+		requiredPredicates = reader.requiredPredicates;
+		requiredGraphs = reader.requiredGraphs;
+		accessPath = reader.accessPath;
+		cost = reader.cost;
+		this.patterns = patterns;
 	}
 
 	@Override
@@ -54,59 +115,233 @@ public class FilteredGraphReader extends GraphReader {
 	@Override
 	public void reset() {
 		close();
-		statementIterators = new LinkedList<>();
+		size = 0;
+		for (long[] pattern : getPatterns()) {
+			size += pattern[2];
+		}
+		patternIterator = getPatterns().iterator();
+	}
+
+	/**
+	 * Splits the predicate and graph patterns between the partitions, balancing their estimated sizes
+	 */
+	@Override
+	public List<GraphReader> partition(int count) {
+		List<long[]> all = getPatterns();
+		if (count <= 1 || all.size() <= 1) {
+			return Collections.singletonList(this);
+		}
+		Integer[] order = new Integer[all.size()];
+		for (int idx = 0; idx < order.length; idx++) {
+			order[idx] = idx;
+		}
+		// the largest patterns first, each to the partition with the smallest size so far
+		Arrays.sort(order, (a, b) -> Long.compare(all.get(b)[2], all.get(a)[2]));
+		int partitions = Math.min(count, all.size());
+		List<List<long[]>> assigned = new ArrayList<>(partitions);
+		long[] assignedSizes = new long[partitions];
+		for (int idx = 0; idx < partitions; idx++) {
+			assigned.add(new ArrayList<>());
+		}
+		for (int idx : order) {
+			int smallest = 0;
+			for (int partition = 1; partition < partitions; partition++) {
+				if (assignedSizes[partition] < assignedSizes[smallest]) {
+					smallest = partition;
+				}
+			}
+			assigned.get(smallest).add(all.get(idx));
+			assignedSizes[smallest] += all.get(idx)[2];
+		}
 
-		if (includedPredicates.isEmpty()) {
-			includedPredicates.add(0L);
+		List<GraphReader> readers = new ArrayList<>(partitions);
+		for (List<long[]> part : assigned) {
+			readers.add(new FilteredGraphReader(this, part));
 		}
-		if (includedGraphs.isEmpty()) {
-			includedGraphs.add(0L);
+		return readers;
+	}
+
+	/**
+	 * Gets the chosen way to read the statements, <code>null</code> before the first reset
+	 */
+	AccessPath getAccessPath() {
+		return accessPath;
+	}
+
+	@Override
+	public void reportStatistics(RankStatistics statistics) {
+		if (accessPath != null) {
+			statistics.set("filterPlan", accessPath.name().toLowerCase(Locale.ROOT));
+			statistics.set("filterCost", cost);
+		}
+	}
+
+	/**
+	 * Gets the predicate, graph and estimated size of each statement pattern read by the reader, 0 matches
+	 * any predicate or graph. The patterns are planned on the first call.
+	 */
+	private List<long[]> getPatterns() {
+		if (patterns != null) {
+			return patterns;
+		}
+		Set<Long> predicates = included(includedPredicates, excludedPredicates);
+		Set<Long> graphs = included(includedGraphs, excludedGraphs);
+		if (predicates != null && predicates.isEmpty() || graphs != null && graphs.isEmpty()) {
+			// all included predicates or graphs are excluded
+			plan(AccessPath.EMPTY, Collections.emptyList(), null, null);
+			return patterns;
 		}
 
-		for (long predicate : includedPredicates) {
-			for (long graph : includedGraphs) {
-				size += statements.estimateSize(0, predicate, object, graph);
-				statementIterators.add(statements.get(0, predicate, object, graph));
+		List<long[]> scan = Collections.singletonList(pattern(0, 0));
+		plan(AccessPath.SCAN, scan, predicates, graphs);
+		if (predicates != null) {
+			List<long[]> byPredicate = new ArrayList<>(predicates.size());
+			for (long predicate : predicates) {
+				byPredicate.add(pattern(predicate, 0));
+			}
+			plan(AccessPath.PREDICATES, byPredicate, null, graphs);
+		}
+		if (graphs != null) {
+			List<long[]> byGraph = new ArrayList<>(graphs.size());
+			for (long graph : graphs) {
+				byGraph.add(pattern(0, graph));
+			}
+			plan(AccessPath.GRAPHS, byGraph, predicates, null);
+		}
+		if (predicates != null && graphs != null && (long) predicates.size() * graphs.size() <= MAX_PAIR_PATTERNS) {
+			List<long[]> pairs = new ArrayList<>(predicates.size() * graphs.size());
+			for (long predicate : predicates) {
+				for (long graph : graphs) {
+					pairs.add(pattern(predicate, graph));
+				}
 			}
+			plan(AccessPath.PAIRS, pairs, null, null);
 		}
+		LoggerFactory.getLogger(getClass()).info("Reading the filtered graph with {} {} patterns, estimated cost {}",
+				patterns.size(), accessPath.name().toLowerCase(Locale.ROOT), cost);
+		return patterns;
+	}
 
-		statementIteratorsIterator = statementIterators.iterator();
+	/**
+	 * Chooses an access path if it is cheaper than the chosen one
+	 *
+	 * @param predicates the predicates checked on every statement or <code>null</code>
+	 * @param graphs the graphs checked on every statement or <code>null</code>
+	 */
+	private void plan(AccessPath path, List<long[]> candidate, Set<Long> predicates, Set<Long> graphs) {
+		long candidateCost = candidate.size() * PATTERN_COST;
+		for (long[] pattern : candidate) {
+			candidateCost += pattern[2];
+		}
+		if (accessPath == null || candidateCost < cost) {
+			accessPath = path;
+			cost = candidateCost;
+			patterns = candidate;
+			requiredPredicates = predicates != null ? LongSet.of(predicates) : null;
+			requiredGraphs = graphs != null ? LongSet.of(graphs) : null;
+		}
+	}
+
+	/**
+	 * Gets the included IDs that are not excluded
+	 *
+	 * @return the IDs or <code>null</code> if all IDs are included
+	 */
+	private static Set<Long> included(Set<Long> included, LongSet excluded) {
+		if (included.isEmpty()) {
+			return null;
+		}
+		Set<Long> ids = new LinkedHashSet<>(included);
+		ids.removeIf(excluded::contains);
+		return ids;
+	}
+
+	private long[] pattern(long predicate, long graph) {
+		return new long[] { predicate, graph, statements.estimateSize(0, predicate, object, graph) };
 	}
 
 	@Override
 	public boolean next() {
-		if (currentStatementIterator.next()) {
-			while (isExcluded()) {
-				if (!currentStatementIterator.next()) {
-					return false;
+		if (!nextIncluded()) {
+			return false;
+		}
+		to = currentStatementIterator.object;
+		from = currentStatementIterator.subject;
+		return true;
+	}
+
+	@Override
+	public int nextBatch(long[] from, long[] to) {
+		int count = 0;
+		while (count < from.length && nextIncluded()) {
+			from[count] = currentStatementIterator.subject;
+			to[count] = currentStatementIterator.object;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Moves to the next statement that is not excluded, opening the iterator of each pattern when the previous
+	 * one is drained
+	 */
+	private boolean nextIncluded() {
+		while (true) {
+			while (currentStatementIterator.next()) {
+				if (!isExcluded()) {
+					return true;
 				}
 			}
-			to = currentStatementIterator.object;
-			from = currentStatementIterator.subject;
-			return true;
-		} else {
-			if (statementIteratorsIterator.hasNext()) {
-				currentStatementIterator = statementIteratorsIterator.next();
-				return next();
+			close();
+			if (!patternIterator.hasNext()) {
+				return false;
 			}
+			long[] pattern = patternIterator.next();
+			currentStatementIterator = statements.get(0, pattern[0], object, pattern[1]);
 		}
-		return false;
 	}
 
 	@Override
 	public void close() {
-		if (statementIterators != null) {
-			for (StatementIterator iterator : statementIterators) {
-				iterator.close();
-			}
+		currentStatementIterator.close();
+		currentStatementIterator = StatementIterator.EMPTY;
+	}
+
+	@Override
+	public boolean accepts(long subject, long predicate, long object, long context, boolean explicit) {
+		if (!accepting) {
+			Set<Long> predicates = included(includedPredicates, excludedPredicates);
+			Set<Long> graphs = included(includedGraphs, excludedGraphs);
+			acceptedPredicates = predicates != null ? LongSet.of(predicates) : null;
+			acceptedGraphs = graphs != null ? LongSet.of(graphs) : null;
+			accepting = true;
 		}
+		return (this.object == 0 || object == this.object)
+				&& (explicit ? includeExplicit : includeImplicit)
+				&& !excludedPredicates.contains(predicate)
+				&& !excludedGraphs.contains(context)
+				&& (acceptedPredicates == null || acceptedPredicates.contains(predicate))
+				&& (acceptedGraphs == null || acceptedGraphs.contains(context));
 	}
 
 	private boolean isExcluded() {
-		return !includeImplicit && currentStatementIterator.isImplicit()
-				|| excludedPredicates.contains(currentStatementIterator.predicate)
-				|| excludedGraphs.contains(currentStatementIterator.context)
-				|| !includeExplicit && currentStatementIterator.isExplicit();
+		StatementIterator iterator = currentStatementIterator;
+		if (iterator.status != lastStatus) {
+			lastStatus = iterator.status;
+			lastStatusExcluded = isExcluded(iterator);
+		}
+		return lastStatusExcluded
+				|| excludedPredicates.contains(iterator.predicate)
+				|| excludedGraphs.contains(iterator.context)
+				|| requiredPredicates != null && !requiredPredicates.contains(iterator.predicate)
+				|| requiredGraphs != null && !requiredGraphs.contains(iterator.context);
+	}
+
+	/**
+	 * Checks whether the status of the current statement of an iterator excludes it
+	 */
+	private boolean isExcluded(StatementIterator iterator) {
+		return !includeImplicit && iterator.isImplicit() || !includeExplicit && iterator.isExplicit();
 	}
 
 }
@@ -0,0 +1,120 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.util.BigFloatArray;
+
+/**
+ * Executes Gauss-Seidel iterations over the transposed graph. The ranks are updated in place, so the new rank
+ * of a node is computed from the ranks of its in-neighbours that were already updated in the same sweep. It
+ * needs a single rank vector and usually fewer iterations than the power iterations.
+ * <p>
+ * The rank of the nodes without outgoing links is kept up to date during the sweep, so that the next nodes
+ * get their share of it too. The difference with the previous ranks is accumulated while updating them.
+ */
+class GaussSeidelIteration {
+	private final TransposedAdjacency transposed;
+	private final long nodes;
+	private final long isolated;
+	// the number of all ranked IDs
+	private final long ranked;
+	private final float dampingFactor;
+	private final float resetProbability;
+	private final BigFloatArray ranks;
+
+	private float isolatedRank;
+	// the total rank of the nodes without outgoing links, including the IDs outside of the graph
+	private double danglingRank;
+	private float minRank, maxRank;
+
+	/**
+	 * @param isolated the number of ranked IDs outside of the graph
+	 * @param ranks the initial ranks, updated in place
+	 * @param isolatedRank the initial rank of the IDs outside of the graph
+	 */
+	GaussSeidelIteration(TransposedAdjacency transposed, long isolated, float dampingFactor, float resetProbability,
+			BigFloatArray ranks, float isolatedRank) {
+		this.transposed = transposed;
+		this.isolated = isolated;
+		this.dampingFactor = dampingFactor;
+		this.resetProbability = resetProbability;
+		this.ranks = ranks;
+		this.isolatedRank = isolatedRank;
+		nodes = transposed.nodeCount();
+		ranked = nodes + isolated;
+		danglingRank = isolated * (double) isolatedRank;
+		for (long idx = 0; idx < nodes; idx++) {
+			if (transposed.isDangling(idx)) {
+				danglingRank += ranks.get(idx);
+			}
+		}
+	}
+
+	/**
+	 * Executes a single sweep over the nodes
+	 *
+	 * @return the accumulated difference between the previous and the new ranks
+	 */
+	float iterate() {
+		CSRAdjacency inbound = transposed.inbound();
+		float delta = 0;
+		double totalRank = 0;
+		long edge = inbound.begin(0);
+		for (long idx = 0; idx < nodes; idx++) {
+			float value = 0;
+			for (long last = inbound.end(idx); edge < last; edge++) {
+				long source = inbound.target(edge);
+				value += ranks.get(source) * transposed.weight(source);
+			}
+			value += (float) (danglingRank / ranked);
+			value *= dampingFactor;
+			value += resetProbability;
+
+			float previous = ranks.get(idx);
+			ranks.set(idx, value);
+			if (transposed.isDangling(idx)) {
+				danglingRank += value - previous;
+			}
+			delta += Math.abs(value - previous);
+			totalRank += value;
+		}
+		if (isolated > 0) {
+			float value = (float) (danglingRank / ranked) * dampingFactor + resetProbability;
+			danglingRank += isolated * (double) (value - isolatedRank);
+			delta += isolated * Math.abs(value - isolatedRank);
+			totalRank += isolated * (double) value;
+			isolatedRank = value;
+		}
+
+		// normalize rank, the rank of the dangling nodes is summed up again to avoid drifting
+		minRank = Float.MAX_VALUE;
+		maxRank = 0;
+		danglingRank = 0;
+		for (long idx = 0; idx < nodes; idx++) {
+			float normalized = (float) (ranks.get(idx) / totalRank);
+			minRank = Math.min(minRank, normalized);
+			maxRank = Math.max(maxRank, normalized);
+			ranks.set(idx, normalized);
+			if (transposed.isDangling(idx)) {
+				danglingRank += normalized;
+			}
+		}
+		if (isolated > 0) {
+			isolatedRank = (float) (isolatedRank / totalRank);
+			minRank = Math.min(minRank, isolatedRank);
+			maxRank = Math.max(maxRank, isolatedRank);
+			danglingRank += isolated * (double) isolatedRank;
+		}
+		return delta;
+	}
+
+	float getIsolatedRank() {
+		return isolatedRank;
+	}
+
+	float getMinRank() {
+		return minRank;
+	}
+
+	float getMaxRank() {
+		return maxRank;
+	}
+}
@@ -1,9 +1,17 @@
 package com.ontotext.trree.plugin.rdfrank;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Abstract graph reader -- provides interface for iterating a graph
  */
 abstract class GraphReader implements AutoCloseable {
+	/**
+	 * The number of edges read at once by the passes over the whole graph
+	 */
+	static final int BATCH_SIZE = 4096;
+
 	long from;
 	long to;
 
@@ -33,6 +41,34 @@ abstract class GraphReader implements AutoCloseable {
 	 */
 	public abstract boolean next();
 
+	/**
+	 * Goes forward in the graph iteration by a batch of edges. The current edge is undefined afterwards.
+	 * 
+	 * @param from the array to receive the source nodes of the edges
+	 * @param to the array to receive the destination nodes of the edges
+	 * @return the number of edges read, at most the length of the arrays, 0 if there are no more edges
+	 */
+	public int nextBatch(long[] from, long[] to) {
+		int count = 0;
+		while (count < from.length && next()) {
+			from[count] = this.from;
+			to[count] = this.to;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Splits the graph into independent readers over disjoint parts of it, which can be read on separate
+	 * threads if the statements are thread-safe. The partitions are reset and closed by their user.
+	 * 
+	 * @param count the maximal number of partitions
+	 * @return the partitions, just this reader if the graph cannot be split
+	 */
+	public List<GraphReader> partition(int count) {
+		return Collections.singletonList(this);
+	}
+
 	/**
 	 * Gets the source node of the current edge
 	 * 
@@ -51,6 +87,28 @@ abstract class GraphReader implements AutoCloseable {
 		return to;
 	}
 
+	/**
+	 * Gets the entity IDs whose incoming edges are dropped by the reader, such IDs are not ranked
+	 * 
+	 * @return the excluded IDs or <code>null</code> if the reader does not exclude any IDs
+	 */
+	public EntityBitmap getExcluded() {
+		return null;
+	}
+
+	/**
+	 * Checks whether a statement is an edge read by the reader, used to follow the changes of the graph
+	 */
+	public boolean accepts(long subject, long predicate, long object, long context, boolean explicit) {
+		return true;
+	}
+
+	/**
+	 * Adds the figures of the reader, e.g. the way it reads the repository, to the statistics of a computation
+	 */
+	public void reportStatistics(RankStatistics statistics) {
+	}
+
 	/**
 	 * Closes any opened iterators
 	 */
@@ -0,0 +1,615 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.sdk.PluginException;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Binary snapshot of the edges of the ranked graph, so that a later computation over the same graph reads the
+ * snapshot instead of the repository. The file holds a versioned header and the edges in the order in which
+ * they were read from the repository, as pairs of words of 4 or 8 bytes depending on the entity ID size.
+ * <p>
+ * A snapshot is valid for the filter and the repository state it was recorded with. It is written by a
+ * {@link Recorder} on the first full pass over the repository and published by an atomic rename, so a
+ * snapshot file is always complete. The changes of the graph since then can be kept in a {@link DeltaLog},
+ * which is applied to the snapshot when it is opened.
+ */
+class GraphSnapshot {
+	private static final int MAGIC = 0x52445247;
+	private static final int VERSION = 1;
+	// magic, version, word size, filter, repository state and edge count
+	private static final int HEADER_SIZE = 3 * Integer.BYTES + 3 * Long.BYTES;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final File file;
+	private final int wordSize;
+	private final long edges;
+
+	private GraphSnapshot(File file, int wordSize, long edges) {
+		this.file = file;
+		this.wordSize = wordSize;
+		this.edges = edges;
+	}
+
+	long edgeCount() {
+		return edges;
+	}
+
+	/**
+	 * Opens a snapshot if it was recorded with the given filter and repository state
+	 *
+	 * @return the snapshot or <code>null</code> if there is no valid snapshot
+	 */
+	static GraphSnapshot open(File file, long filter, long state) {
+		long[] header = readHeader(file, filter);
+		return header != null && header[1] == state ? new GraphSnapshot(file, (int) header[0], header[2]) : null;
+	}
+
+	/**
+	 * Opens a snapshot if it was recorded with the given filter and its state, together with the changes in a
+	 * delta log, matches the given repository state. The changes are applied to the snapshot, which is written
+	 * again, and the log is cleared.
+	 *
+	 * @return the snapshot or <code>null</code> if there is no valid snapshot
+	 */
+	static GraphSnapshot open(File file, long filter, long state, DeltaLog delta) {
+		synchronized (delta) {
+			if (delta.isEmpty()) {
+				return open(file, filter, state);
+			}
+			long[] header = readHeader(file, filter);
+			if (header == null) {
+				return null;
+			}
+			// the number of times each changed edge is added, negative if removed
+			Map<Edge, Integer> changes = new HashMap<>();
+			long statementChange = delta.read(new DeltaLog.Visitor() {
+				@Override
+				public void added(long from, long to) {
+					changes.merge(new Edge(from, to), 1, Integer::sum);
+				}
+
+				@Override
+				public void removed(long from, long to) {
+					changes.merge(new Edge(from, to), -1, Integer::sum);
+				}
+			});
+			if (header[1] + statementChange != state) {
+				LoggerFactory.getLogger(GraphSnapshot.class).info("The graph snapshot and its delta log do not match "
+						+ "the repository, recording it again");
+				return null;
+			}
+
+			GraphSnapshot previous = new GraphSnapshot(file, (int) header[0], header[2]);
+			Merged merged = new Merged(previous.reader(0), changes);
+			Recorder recorder = new Recorder(merged, file, filter, state, Byte.SIZE * previous.wordSize, () -> true,
+					delta);
+			try {
+				recorder.reset();
+				while (recorder.next()) {
+					// recorded
+				}
+			} finally {
+				recorder.close();
+			}
+			if (!recorder.isRecorded() || merged.isMissingRemoved()) {
+				LoggerFactory.getLogger(GraphSnapshot.class).info("Cannot apply the delta log to the graph snapshot, "
+						+ "recording it again");
+				delete(file);
+				return null;
+			}
+			LoggerFactory.getLogger(GraphSnapshot.class).info("Applied {} changed edges to the graph snapshot",
+					changes.size());
+			return open(file, filter, state);
+		}
+	}
+
+	/**
+	 * Reads the header of a snapshot recorded with the given filter
+	 *
+	 * @return the word size, the repository state and the edge count, or <code>null</code> if there is no
+	 *         valid snapshot
+	 */
+	private static long[] readHeader(File file, long filter) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			int wordSize = in.readInt();
+			if (in.readLong() != filter) {
+				return null;
+			}
+			long state = in.readLong();
+			long edges = in.readLong();
+			if (file.length() != HEADER_SIZE + 2 * wordSize * edges) {
+				return null;
+			}
+			return new long[] { wordSize, state, edges };
+		} catch (IOException e) {
+			LoggerFactory.getLogger(GraphSnapshot.class).warn("Cannot read the graph snapshot " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes a snapshot, as the graph has changed
+	 */
+	static void delete(File file) {
+		if (!file.delete() && file.exists()) {
+			LoggerFactory.getLogger(GraphSnapshot.class).warn("Cannot delete the graph snapshot {}", file);
+		}
+	}
+
+	/**
+	 * Creates a reader of the edges of the snapshot
+	 *
+	 * @param nodes the number of nodes in the graph
+	 */
+	GraphReader reader(long nodes) {
+		return new Reader(nodes, 0, edges);
+	}
+
+	/**
+	 * Reader of a range of the edges of the snapshot
+	 */
+	private class Reader extends GraphReader {
+		private final long nodes;
+		private final long first;
+		private final long end;
+		private DataInputStream in;
+		private long position;
+
+		Reader(long nodes, long first, long end) {
+			this.nodes = nodes;
+			this.first = first;
+			this.end = end;
+		}
+
+		@Override
+		public long nodeCount() {
+			return nodes;
+		}
+
+		@Override
+		public long size() {
+			return end - first;
+		}
+
+		@Override
+		public void reset() {
+			close();
+			try {
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				channel.position(HEADER_SIZE + 2 * wordSize * first);
+				in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+			} catch (IOException e) {
+				throw new PluginException("Cannot read the graph snapshot " + file, e);
+			}
+			position = first;
+		}
+
+		@Override
+		public boolean next() {
+			if (position >= end) {
+				return false;
+			}
+			try {
+				from = readWord();
+				to = readWord();
+			} catch (IOException e) {
+				throw new PluginException("Cannot read the graph snapshot " + file, e);
+			}
+			position++;
+			return true;
+		}
+
+		@Override
+		public int nextBatch(long[] from, long[] to) {
+			int count = (int) Math.min(from.length, end - position);
+			try {
+				for (int idx = 0; idx < count; idx++) {
+					from[idx] = readWord();
+					to[idx] = readWord();
+				}
+			} catch (IOException e) {
+				throw new PluginException("Cannot read the graph snapshot " + file, e);
+			}
+			position += count;
+			return count;
+		}
+
+		/**
+		 * Splits the edges into consecutive ranges
+		 */
+		@Override
+		public List<GraphReader> partition(int count) {
+			if (count <= 1 || end - first < 2L * BATCH_SIZE) {
+				return Collections.singletonList(this);
+			}
+			List<GraphReader> partitions = new ArrayList<>(count);
+			for (int idx = 0; idx < count; idx++) {
+				partitions.add(new Reader(nodes, first + (end - first) * idx / count,
+						first + (end - first) * (idx + 1) / count));
+			}
+			return partitions;
+		}
+
+		@Override
+		public void reportStatistics(RankStatistics statistics) {
+			statistics.set("snapshot", "reused");
+		}
+
+		@Override
+		public void close() {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// only read
+				}
+				in = null;
+			}
+		}
+
+		private long readWord() throws IOException {
+			return wordSize == Integer.BYTES ? in.readInt() & 0xFFFFFFFFL : in.readLong();
+		}
+	}
+
+	private static final class Edge {
+		final long from;
+		final long to;
+
+		Edge(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Edge && ((Edge) o).from == from && ((Edge) o).to == to;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(from * 31 + to);
+		}
+	}
+
+	/**
+	 * Reader of the edges of a snapshot with the changes of a delta log applied, the removed edges are left
+	 * out and the added ones follow the rest
+	 */
+	private static class Merged extends GraphReader {
+		private final GraphReader snapshot;
+		private final Map<Edge, Integer> changes;
+		// the sources of the removed edges, so that most edges are not looked up
+		private final LongSet removedSources;
+		private Iterator<Map.Entry<Edge, Integer>> added;
+		private Edge current;
+		private int repeat;
+
+		Merged(GraphReader snapshot, Map<Edge, Integer> changes) {
+			this.snapshot = snapshot;
+			this.changes = changes;
+			Set<Long> sources = new HashSet<>();
+			for (Map.Entry<Edge, Integer> change : changes.entrySet()) {
+				if (change.getValue() < 0) {
+					sources.add(change.getKey().from);
+				}
+			}
+			removedSources = LongSet.of(sources);
+		}
+
+		/**
+		 * Checks whether some removed edges were not found in the snapshot, so it does not match the log
+		 */
+		boolean isMissingRemoved() {
+			for (int count : changes.values()) {
+				if (count < 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public long nodeCount() {
+			return snapshot.nodeCount();
+		}
+
+		@Override
+		public long size() {
+			return snapshot.size();
+		}
+
+		@Override
+		public void reset() {
+			snapshot.reset();
+			added = null;
+			repeat = 0;
+		}
+
+		@Override
+		public boolean next() {
+			if (added == null) {
+				while (snapshot.next()) {
+					if (removedSources.contains(snapshot.getFrom())) {
+						Edge edge = new Edge(snapshot.getFrom(), snapshot.getTo());
+						Integer count = changes.get(edge);
+						if (count != null && count < 0) {
+							changes.put(edge, count + 1);
+							continue;
+						}
+					}
+					from = snapshot.getFrom();
+					to = snapshot.getTo();
+					return true;
+				}
+				// the snapshot is replaced when the merged edges are recorded
+				snapshot.close();
+				added = changes.entrySet().iterator();
+			}
+			while (repeat == 0) {
+				if (!added.hasNext()) {
+					return false;
+				}
+				Map.Entry<Edge, Integer> change = added.next();
+				current = change.getKey();
+				repeat = Math.max(change.getValue(), 0);
+			}
+			repeat--;
+			from = current.from;
+			to = current.to;
+			return true;
+		}
+
+		@Override
+		public void close() {
+			snapshot.close();
+		}
+	}
+
+	/**
+	 * Graph reader that records the edges of another reader into a snapshot on the first full pass over them.
+	 * The snapshot is published only if the whole graph was read and the graph is still current.
+	 */
+	static class Recorder extends GraphReader {
+		private final GraphReader reader;
+		private final File file;
+		private final long filter;
+		private final long state;
+		private final int wordSize;
+		private final BooleanSupplier current;
+		private final DeltaLog delta;
+		private File temp;
+		private DataOutputStream out;
+		private long edges;
+		private boolean recorded;
+
+		/**
+		 * @param file the snapshot file
+		 * @param filter the fingerprint of the filter of the graph
+		 * @param state the fingerprint of the repository state
+		 * @param current tells whether the graph has not changed since the recording started
+		 * @param delta the log of the changes since the previous snapshot, cleared when this one is published, or
+		 *            <code>null</code>
+		 */
+		Recorder(GraphReader reader, File file, long filter, long state, int entityBitSize, BooleanSupplier current,
+				DeltaLog delta) {
+			this.reader = reader;
+			this.file = file;
+			this.filter = filter;
+			this.state = state;
+			this.current = current;
+			this.delta = delta;
+			wordSize = EdgeFile.wordSize(entityBitSize);
+		}
+
+		/**
+		 * Checks whether the snapshot was recorded
+		 */
+		boolean isRecorded() {
+			return recorded;
+		}
+
+		@Override
+		public long nodeCount() {
+			return reader.nodeCount();
+		}
+
+		@Override
+		public long size() {
+			return reader.size();
+		}
+
+		@Override
+		public void reset() {
+			reader.reset();
+			discard();
+			if (!recorded) {
+				start();
+			}
+		}
+
+		@Override
+		public boolean next() {
+			boolean result = reader.next();
+			if (result) {
+				from = reader.getFrom();
+				to = reader.getTo();
+			}
+			if (out != null) {
+				if (result) {
+					record(from, to);
+				} else {
+					finish();
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public int nextBatch(long[] from, long[] to) {
+			int count = reader.nextBatch(from, to);
+			if (out != null) {
+				for (int idx = 0; idx < count && out != null; idx++) {
+					record(from[idx], to[idx]);
+				}
+				if (count == 0) {
+					finish();
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Splits the graph only once it is recorded, as the recording is sequential
+		 */
+		@Override
+		public List<GraphReader> partition(int count) {
+			return recorded ? reader.partition(count) : Collections.singletonList(this);
+		}
+
+		@Override
+		public EntityBitmap getExcluded() {
+			return reader.getExcluded();
+		}
+
+		@Override
+		public void reportStatistics(RankStatistics statistics) {
+			reader.reportStatistics(statistics);
+			statistics.set("snapshot", recorded ? "recorded" : "none");
+		}
+
+		@Override
+		public void close() {
+			reader.close();
+			discard();
+		}
+
+		private void start() {
+			try {
+				file.getParentFile().mkdirs();
+				temp = new File(file.getPath() + ".temp");
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(wordSize);
+				out.writeLong(filter);
+				out.writeLong(state);
+				// the edge count is written when the recording is finished
+				out.writeLong(-1);
+				edges = 0;
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		private void record(long from, long to) {
+			try {
+				writeWord(from);
+				writeWord(to);
+				edges++;
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		private void finish() {
+			try {
+				out.close();
+				out = null;
+				try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+					raf.seek(HEADER_SIZE - Long.BYTES);
+					raf.writeLong(edges);
+				}
+				if (delta != null) {
+					// no changes are logged between the check and the clearing of the log
+					synchronized (delta) {
+						publish();
+					}
+				} else {
+					publish();
+				}
+				if (!recorded) {
+					return;
+				}
+				LoggerFactory.getLogger(getClass()).info("Recorded {} edges in the graph snapshot {}", edges, file);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		private void publish() throws IOException {
+			if (!current.getAsBoolean()) {
+				LoggerFactory.getLogger(getClass()).info("The graph changed while being recorded, dropping the snapshot");
+				discard();
+				return;
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			temp = null;
+			recorded = true;
+			if (delta != null) {
+				delta.clear();
+			}
+		}
+
+		/**
+		 * Stops recording, the computation goes on without a snapshot
+		 */
+		private void fail(IOException e) {
+			LoggerFactory.getLogger(getClass()).warn("Cannot record the graph snapshot " + file, e);
+			discard();
+		}
+
+		private void discard() {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// deleted anyway
+				}
+				out = null;
+			}
+			if (temp != null) {
+				temp.delete();
+				temp = null;
+			}
+		}
+
+		private void writeWord(long value) throws IOException {
+			if (wordSize == Integer.BYTES) {
+				out.writeInt((int) value);
+			} else {
+				out.writeLong(value);
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.io.File;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Counts the links to a range of new entity IDs, the links among them coming from the ranked IDs and the sum of
+ * the ranks of the latter, for the incremental computation. The links may come in any order, e.g. from a scan of
+ * the whole graph. The links from the ranked IDs are buffered and their ranks are resolved in batches sorted by
+ * source, so that the stored ranks are read in ID order.
+ * <p>
+ * The counts are kept off the heap in a temporary file, three longs for each new ID - the links, the links from
+ * the ranked IDs and the sum of their ranks, so the heap use does not depend on the number of new IDs.
+ */
+class InboundLinks implements AutoCloseable {
+	private static final int BATCH_SIZE = 1 << 16;
+	private static final int LINKS = 0;
+	private static final int STABLE_LINKS = 1;
+	private static final int STABLE_RANKS = 2;
+	private static final int RECORD_SIZE = 3;
+
+	private final long begin;
+	private final long end;
+	private final LongToDoubleFunction ranks;
+	private final MappedLongArray counts;
+
+	private final long[] stableFrom = new long[BATCH_SIZE];
+	private final long[] stableTo = new long[BATCH_SIZE];
+	private int stable;
+
+	/**
+	 * @param begin the first new ID, the IDs before it are ranked
+	 * @param end the ID after the last new ID
+	 * @param ranks the ranks of the ranked IDs
+	 * @param file the temporary file for the counts, deleted on close
+	 */
+	InboundLinks(long begin, long end, LongToDoubleFunction ranks, File file) {
+		this.begin = begin;
+		this.end = end;
+		this.ranks = ranks;
+		counts = new MappedLongArray(file, (end - begin) * RECORD_SIZE);
+	}
+
+	/**
+	 * Counts a link if it points to a new ID
+	 */
+	void add(long from, long to) {
+		if (to < begin || to >= end) {
+			return;
+		}
+		long record = (to - begin) * RECORD_SIZE;
+		counts.add(record + LINKS, 1);
+		if (from < begin) {
+			counts.add(record + STABLE_LINKS, 1);
+			stableFrom[stable] = from;
+			stableTo[stable] = record;
+			if (++stable == BATCH_SIZE) {
+				resolve();
+			}
+		}
+	}
+
+	/**
+	 * Adds up the ranks of the buffered links from the ranked IDs
+	 */
+	void finish() {
+		resolve();
+	}
+
+	long getLinks(long id) {
+		return counts.get((id - begin) * RECORD_SIZE + LINKS);
+	}
+
+	long getStableLinks(long id) {
+		return counts.get((id - begin) * RECORD_SIZE + STABLE_LINKS);
+	}
+
+	/**
+	 * Gets the average rank of the ranked IDs linking to an ID, 0 if there are none
+	 */
+	double getStableRank(long id) {
+		long record = (id - begin) * RECORD_SIZE;
+		long stableLinks = counts.get(record + STABLE_LINKS);
+		return stableLinks != 0 ? counts.getDouble(record + STABLE_RANKS) / stableLinks : 0;
+	}
+
+	@Override
+	public void close() {
+		counts.close();
+	}
+
+	private void resolve() {
+		RankUtils.sort(stableFrom, stableTo, stable);
+		long source = -1;
+		double rank = 0;
+		for (int idx = 0; idx < stable; idx++) {
+			if (stableFrom[idx] != source) {
+				source = stableFrom[idx];
+				rank = ranks.applyAsDouble(source);
+			}
+			counts.addDouble(stableTo[idx] + STABLE_RANKS, rank);
+		}
+		stable = 0;
+	}
+}
@@ -0,0 +1,297 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongFunction;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Updates the ranks of a previous computation after some edges of the graph were added or removed, by pushing
+ * residuals from the changed nodes only, in the style of the dynamic PageRank tracking methods.
+ * <p>
+ * The change of the out-links of a node changes the rank it sends to its old and new targets, which becomes
+ * their residual. A new node gets the reset probability as its residual. The residuals above the threshold are
+ * added to the ranks and pushed along the out-links of their nodes until all of them fall below it, so the work
+ * is proportional to the part of the graph the change reaches. The out-links are looked up in the current graph
+ * on demand and the unchanged ranks are read from the previous computation.
+ * <p>
+ * The rank a node without out-links sends to all nodes is at most the rank of the node divided by the number of
+ * nodes, which is below the threshold of every node unless the rank is above epsilon, so such uniform residuals
+ * are only summed up. The ranks are not normalized again, the total rank moves by the pushed residuals until the
+ * next full computation.
+ */
+class IncrementalRank implements DeltaLog.Visitor {
+	private final LongFunction<long[]> targets;
+	private final LongToDoubleFunction previousRanks;
+	private final long nodes;
+	private final double dampingFactor;
+	private final double threshold;
+
+	// the added and the removed targets of each changed source
+	private final Map<Long, long[][]> changes = new HashMap<>();
+	private final Map<Long, long[]> targetCache = new HashMap<>();
+	private final LongDoubleMap ranks = new LongDoubleMap();
+	private final LongDoubleMap residuals = new LongDoubleMap();
+	private long[] queue = new long[64];
+	private int queueSize;
+
+	private double uniformResidual;
+	private long pushes;
+	private long pushedEdges;
+
+	/**
+	 * @param targets the targets of the out-links of a node in the current graph
+	 * @param previousRanks the ranks of the previous computation, negative for the nodes without rank
+	 * @param nodes the number of ranked IDs
+	 */
+	IncrementalRank(LongFunction<long[]> targets, LongToDoubleFunction previousRanks, long nodes,
+			float dampingFactor, float epsilon) {
+		this.targets = targets;
+		this.previousRanks = previousRanks;
+		this.nodes = nodes;
+		this.dampingFactor = dampingFactor;
+		// the residual of a converged node is at most epsilon / N, so they add up to at most epsilon
+		threshold = epsilon / nodes;
+	}
+
+	@Override
+	public void added(long from, long to) {
+		change(from, 0, to);
+	}
+
+	@Override
+	public void removed(long from, long to) {
+		change(from, 1, to);
+	}
+
+	/**
+	 * Adds a node created after the previous computation, it starts from the reset probability
+	 */
+	void nodeAdded(long id) {
+		addResidual(id, (1 - dampingFactor) / nodes);
+	}
+
+	/**
+	 * Seeds the residuals of the targets of the changed nodes and pushes them until they are all below the
+	 * threshold
+	 *
+	 * @param interrupted tells whether to stop pushing
+	 * @return whether the residuals converged
+	 */
+	boolean compute(BooleanSupplier interrupted) {
+		for (Map.Entry<Long, long[][]> change : changes.entrySet()) {
+			seed(change.getKey(), change.getValue());
+		}
+		changes.clear();
+		while (queueSize > 0) {
+			if (interrupted.getAsBoolean()) {
+				return false;
+			}
+			push(queue[--queueSize]);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the current rank of a node
+	 */
+	double getRank(long id) {
+		return ranks.contains(id) ? ranks.get(id) : previousRank(id);
+	}
+
+	/**
+	 * Gets the nodes whose rank changed in ascending order
+	 */
+	long[] getChangedNodes() {
+		long[] ids = ranks.keys();
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Gets the number of nodes whose residuals were pushed
+	 */
+	long getPushes() {
+		return pushes;
+	}
+
+	long getPushedEdges() {
+		return pushedEdges;
+	}
+
+	/**
+	 * Gets the residual of every node coming from the nodes that gained or lost all of their out-links, which is
+	 * left out
+	 */
+	double getUniformResidual() {
+		return uniformResidual;
+	}
+
+	double getThreshold() {
+		return threshold;
+	}
+
+	private void change(long from, int kind, long to) {
+		long[][] lists = changes.computeIfAbsent(from, id -> new long[][] { new long[1], new long[1] });
+		long[] list = lists[kind];
+		int size = (int) list[0];
+		if (size + 1 == list.length) {
+			list = lists[kind] = Arrays.copyOf(list, list.length * 2);
+		}
+		list[0] = size + 1;
+		list[size + 1] = to;
+	}
+
+	/**
+	 * Replaces the rank sent along the previous out-links of a node with the one sent along the current ones
+	 *
+	 * @param change the added and the removed targets, each list starting with its size
+	 */
+	private void seed(long source, long[][] change) {
+		double rank = getRank(source);
+		if (rank <= 0) {
+			// a new node sends its rank when it is pushed
+			return;
+		}
+		long[] current = getTargets(source);
+		long[] added = change[0];
+		long[] removed = change[1];
+		long previousDegree = current.length - added[0] + removed[0];
+		// the rank sent to all nodes only matters through the uniform residual
+		if (previousDegree <= 0) {
+			uniformResidual -= dampingFactor * rank / nodes;
+		} else {
+			double emission = dampingFactor * rank / previousDegree;
+			for (long target : current) {
+				addResidual(target, -emission);
+			}
+			for (int idx = 1; idx <= added[0]; idx++) {
+				addResidual(added[idx], emission);
+			}
+			for (int idx = 1; idx <= removed[0]; idx++) {
+				addResidual(removed[idx], -emission);
+			}
+		}
+		if (current.length == 0) {
+			uniformResidual += dampingFactor * rank / nodes;
+		} else {
+			double emission = dampingFactor * rank / current.length;
+			for (long target : current) {
+				addResidual(target, emission);
+			}
+		}
+	}
+
+	private void push(long id) {
+		double residual = residuals.get(id);
+		if (Math.abs(residual) <= threshold) {
+			// pushed already or cancelled out
+			return;
+		}
+		residuals.put(id, 0);
+		ranks.put(id, getRank(id) + residual);
+		pushes++;
+		long[] current = getTargets(id);
+		if (current.length == 0) {
+			uniformResidual += dampingFactor * residual / nodes;
+			return;
+		}
+		double emission = dampingFactor * residual / current.length;
+		for (long target : current) {
+			addResidual(target, emission);
+		}
+		pushedEdges += current.length;
+	}
+
+	private void addResidual(long id, double residual) {
+		double value = residuals.get(id) + residual;
+		residuals.put(id, value);
+		if (Math.abs(value) > threshold && Math.abs(value - residual) <= threshold) {
+			if (queueSize == queue.length) {
+				queue = Arrays.copyOf(queue, queueSize * 2);
+			}
+			queue[queueSize++] = id;
+		}
+	}
+
+	private long[] getTargets(long id) {
+		long[] cached = targetCache.get(id);
+		if (cached == null) {
+			cached = targets.apply(id);
+			targetCache.put(id, cached);
+		}
+		return cached;
+	}
+
+	private double previousRank(long id) {
+		double rank = previousRanks.applyAsDouble(id);
+		return rank > 0 ? rank : 0;
+	}
+
+	/**
+	 * Map from node IDs, which are never 0, to values, with open addressing and linear probing
+	 */
+	private static final class LongDoubleMap {
+		private long[] keys = new long[64];
+		private double[] values = new double[64];
+		private int size;
+
+		boolean contains(long key) {
+			return keys[find(key)] != 0;
+		}
+
+		double get(long key) {
+			int slot = find(key);
+			return keys[slot] != 0 ? values[slot] : 0;
+		}
+
+		void put(long key, double value) {
+			int slot = find(key);
+			if (keys[slot] == 0) {
+				keys[slot] = key;
+				if (++size * 2 > keys.length) {
+					values[slot] = value;
+					grow();
+					return;
+				}
+			}
+			values[slot] = value;
+		}
+
+		long[] keys() {
+			long[] result = new long[size];
+			int count = 0;
+			for (long key : keys) {
+				if (key != 0) {
+					result[count++] = key;
+				}
+			}
+			return result;
+		}
+
+		private int find(long key) {
+			int mask = keys.length - 1;
+			int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+			while (keys[slot] != 0 && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			double[] oldValues = values;
+			keys = new long[oldKeys.length * 2];
+			values = new double[oldKeys.length * 2];
+			for (int idx = 0; idx < oldKeys.length; idx++) {
+				if (oldKeys[idx] != 0) {
+					int slot = find(oldKeys[idx]);
+					keys[slot] = oldKeys[idx];
+					values[slot] = oldValues[idx];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.Set;
+
+/**
+ * Immutable set of entity IDs looked up without boxing. Small non-negative IDs are kept in a bitmap, the
+ * rest in an open-addressing hash table with linear probing.
+ */
+final class LongSet {
+	static final LongSet EMPTY = new LongSet(new long[0], null, false, 0);
+
+	// the largest bitmap is 8KB, so that it stays in the L1 cache
+	private static final long MAX_BITMAP_SIZE = 1 << 16;
+
+	private final long[] bitmap;
+	// the free slots hold 0, which is tracked separately
+	private final long[] table;
+	private final boolean containsZero;
+	private final int size;
+
+	private LongSet(long[] bitmap, long[] table, boolean containsZero, int size) {
+		this.bitmap = bitmap;
+		this.table = table;
+		this.containsZero = containsZero;
+		this.size = size;
+	}
+
+	static LongSet of(Set<Long> values) {
+		if (values == null || values.isEmpty()) {
+			return EMPTY;
+		}
+		long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+		for (long value : values) {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		if (min >= 0 && max < MAX_BITMAP_SIZE) {
+			long[] bitmap = new long[(int) (max >>> 6) + 1];
+			for (long value : values) {
+				bitmap[(int) (value >>> 6)] |= 1L << value;
+			}
+			return new LongSet(bitmap, null, false, values.size());
+		}
+
+		long[] table = new long[Integer.highestOneBit(values.size()) << 2];
+		boolean containsZero = false;
+		for (long value : values) {
+			if (value == 0) {
+				containsZero = true;
+				continue;
+			}
+			int slot = slot(value, table.length);
+			while (table[slot] != 0 && table[slot] != value) {
+				slot = (slot + 1) & (table.length - 1);
+			}
+			table[slot] = value;
+		}
+		return new LongSet(null, table, containsZero, values.size());
+	}
+
+	boolean contains(long value) {
+		if (table == null) {
+			return value >= 0 && (value >>> 6) < bitmap.length && (bitmap[(int) (value >>> 6)] & (1L << value)) != 0;
+		}
+		if (value == 0) {
+			return containsZero;
+		}
+		for (int slot = slot(value, table.length);; slot = (slot + 1) & (table.length - 1)) {
+			if (table[slot] == value) {
+				return true;
+			}
+			if (table[slot] == 0) {
+				return false;
+			}
+		}
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private static int slot(long value, int length) {
+		return (int) ((value * 0x9E3779B97F4A7C15L) >>> 32) & (length - 1);
+	}
+}
@@ -0,0 +1,78 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.sdk.PluginException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Long-indexed array of longs kept off the heap in a temporary file mapped in fixed-size segments, so that its
+ * size is limited by the disk rather than the heap. The file is sparse until written and the elements start as 0.
+ * The file is deleted on close.
+ */
+class MappedLongArray implements AutoCloseable {
+	private static final int SEGMENT_BITS = 23;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private final File file;
+	private final long length;
+	private LongBuffer[] segments;
+
+	MappedLongArray(File file, long length) {
+		this.file = file;
+		this.length = length;
+		segments = new LongBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			for (int idx = 0; idx < segments.length; idx++) {
+				long start = (long) idx << SEGMENT_BITS;
+				// the mapping outlives the channel
+				segments[idx] = channel.map(FileChannel.MapMode.READ_WRITE, start * Long.BYTES,
+						Math.min(SEGMENT_SIZE, length - start) * Long.BYTES).asLongBuffer();
+			}
+		} catch (IOException e) {
+			file.delete();
+			throw new PluginException("Cannot map the temporary file " + file, e);
+		}
+	}
+
+	long length() {
+		return length;
+	}
+
+	long get(long index) {
+		return segments[(int) (index >>> SEGMENT_BITS)].get((int) (index & SEGMENT_MASK));
+	}
+
+	void set(long index, long value) {
+		segments[(int) (index >>> SEGMENT_BITS)].put((int) (index & SEGMENT_MASK), value);
+	}
+
+	void add(long index, long delta) {
+		LongBuffer segment = segments[(int) (index >>> SEGMENT_BITS)];
+		int offset = (int) (index & SEGMENT_MASK);
+		segment.put(offset, segment.get(offset) + delta);
+	}
+
+	double getDouble(long index) {
+		return Double.longBitsToDouble(get(index));
+	}
+
+	void addDouble(long index, double delta) {
+		set(index, Double.doubleToRawLongBits(getDouble(index) + delta));
+	}
+
+	@Override
+	public void close() {
+		// the segments are unmapped when collected, a file still mapped can only be deleted on some platforms
+		segments = null;
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+/**
+ * Maps the entity IDs that take part in the ranked graph to a dense range [0, {@link #count()}) in ID order.
+ * The participating IDs are marked in a bitmap and the dense number of an ID is the number of marked IDs
+ * before it, found with the cumulative count of the bitmap word and a population count.
+ */
+class NodeIndex {
+	private final EntityBitmap marked;
+	// the number of marked IDs before each word, filled by seal()
+	private ChunkedLongArray counts;
+
+	NodeIndex(long size) {
+		marked = new EntityBitmap(size);
+	}
+
+	/**
+	 * Marks an entity ID as part of the graph
+	 */
+	void mark(long id) {
+		marked.set(id);
+	}
+
+	/**
+	 * Finishes marking and builds the cumulative counts
+	 */
+	void seal() {
+		counts = new ChunkedLongArray(marked.wordCount());
+		long sum = 0;
+		for (long word = 0; word < marked.wordCount(); word++) {
+			counts.set(word, sum);
+			sum += Long.bitCount(marked.word(word));
+		}
+	}
+
+	/**
+	 * Gets the number of all entity IDs
+	 */
+	long size() {
+		return marked.size();
+	}
+
+	/**
+	 * Gets the number of the marked entity IDs
+	 */
+	long count() {
+		return marked.count();
+	}
+
+	boolean contains(long id) {
+		return marked.get(id);
+	}
+
+	/**
+	 * Gets the dense number of a marked entity ID
+	 */
+	long dense(long id) {
+		long word = id >>> 6;
+		return counts.get(word) + Long.bitCount(marked.word(word) & ((1L << id) - 1));
+	}
+
+	/**
+	 * Estimates the memory in bytes needed for the index of the given number of entity IDs
+	 */
+	static long estimateMemory(long size) {
+		return 2 * EntityBitmap.estimateMemory(size);
+	}
+}
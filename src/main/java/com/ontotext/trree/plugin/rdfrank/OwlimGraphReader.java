@@ -26,6 +26,17 @@ class OwlimGraphReader extends GraphReader {
 		return result;
 	}
 
+	@Override
+	public int nextBatch(long[] from, long[] to) {
+		int count = 0;
+		while (count < from.length && iterator.next()) {
+			from[count] = iterator.subject;
+			to[count] = iterator.object;
+			count++;
+		}
+		return count;
+	}
+
 	@Override
 	public void reset() {
 		close();
@@ -42,10 +53,16 @@ class OwlimGraphReader extends GraphReader {
 		return entities.size();
 	}
 
+	@Override
+	public boolean accepts(long subject, long predicate, long object, long context, boolean explicit) {
+		return this.object == 0 || object == this.object;
+	}
+
 	@Override
 	public void close() {
 		if (iterator != null) {
 			iterator.close();
+			iterator = null;
 		}
 	}
 }
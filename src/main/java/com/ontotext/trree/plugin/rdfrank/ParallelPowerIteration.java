@@ -0,0 +1,324 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.util.BigFloatArray;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Executes the power iterations of the rank computation over an in-memory graph on a {@link ForkJoinPool}.
+ * <p>
+ * With the push kernel the nodes add their rank to their out-neighbours in a shared accumulator, while with the
+ * pull kernel each node gathers the ranks of its in-neighbours from a {@link TransposedAdjacency}, so every
+ * partition writes only its own range of nodes.
+ * <p>
+ * The passes over the links are partitioned by the number of edges, as the RDF graphs have very skewed degree
+ * distributions, and the other passes are partitioned by the number of nodes. Every partition computes its own
+ * dangling rank, total rank, min/max and delta, which are then reduced in partition order.
+ * <p>
+ * The IDs outside of the graph, if any, are not part of the rank vectors. They share a single rank which is
+ * computed along with the partitions.
+ */
+class ParallelPowerIteration implements AutoCloseable {
+	// more partitions than threads so that work stealing can even out the load
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	private final ForkJoinPool pool;
+	private final long size;
+	private final long isolated;
+	private final float dampingFactor;
+	private final float resetProbability;
+
+	// the push kernel works over the outgoing links and accumulates the ranks
+	private final CSRAdjacency adjacency;
+	private final AtomicFloatArray accumulated;
+	// the pull kernel works over the incoming links
+	private final TransposedAdjacency transposed;
+
+	private final long[] edgePartitions;
+	private final long[] nodePartitions;
+
+	private float minRank, maxRank, isolatedRank;
+
+	private ParallelPowerIteration(CSRAdjacency adjacency, TransposedAdjacency transposed, long isolated,
+			int parallelism, float dampingFactor, float resetProbability) {
+		this.adjacency = adjacency;
+		this.transposed = transposed;
+		this.isolated = isolated;
+		this.dampingFactor = dampingFactor;
+		this.resetProbability = resetProbability;
+		pool = new ForkJoinPool(parallelism);
+		int partitions = parallelism * PARTITIONS_PER_THREAD;
+		if (transposed != null) {
+			size = transposed.nodeCount();
+			edgePartitions = partitionByEdges(transposed.inbound(), partitions);
+			accumulated = null;
+		} else {
+			size = adjacency.nodeCount();
+			edgePartitions = partitionByEdges(adjacency, partitions);
+			accumulated = new AtomicFloatArray(size);
+		}
+		nodePartitions = partitionByNodes(size, partitions);
+	}
+
+	/**
+	 * Creates an iteration with the push kernel, it needs an additional rank vector to accumulate the ranks
+	 *
+	 * @param isolated the number of IDs outside of the graph
+	 */
+	static ParallelPowerIteration push(CSRAdjacency adjacency, long isolated, int parallelism, float dampingFactor,
+			float resetProbability) {
+		return new ParallelPowerIteration(adjacency, null, isolated, parallelism, dampingFactor, resetProbability);
+	}
+
+	/**
+	 * Creates an iteration with the pull kernel
+	 *
+	 * @param isolated the number of IDs outside of the graph
+	 */
+	static ParallelPowerIteration pull(TransposedAdjacency transposed, long isolated, int parallelism,
+			float dampingFactor, float resetProbability) {
+		return new ParallelPowerIteration(null, transposed, isolated, parallelism, dampingFactor, resetProbability);
+	}
+
+	/**
+	 * Executes a single iteration
+	 *
+	 * @param prevRank the ranks computed on the previous iteration
+	 * @param currRank the array to fill with the new ranks
+	 * @param prevIsolated the rank of the IDs outside of the graph computed on the previous iteration
+	 * @return the accumulated difference between the previous and the new ranks
+	 */
+	float iterate(BigFloatArray prevRank, BigFloatArray currRank, float prevIsolated) {
+		// the IDs outside of the graph have no outgoing links
+		float isolatedDangling = isolated * prevIsolated;
+		float graphRank = transposed != null
+				? pull(prevRank, currRank, isolatedDangling)
+				: push(prevRank, currRank, isolatedDangling);
+		float totalRank = isolated > 0 ? graphRank + isolated * isolatedRank : graphRank;
+		isolatedRank /= totalRank;
+
+		// normalize rank
+		Reduction normalization = run(nodePartitions, (begin, end, reduction) -> {
+			for (long idx = begin; idx < end; idx++) {
+				float normalized = currRank.get(idx) / totalRank;
+				if (normalized < reduction.min) {
+					reduction.min = normalized;
+				}
+				if (normalized > reduction.max) {
+					reduction.max = normalized;
+				}
+				currRank.set(idx, normalized);
+			}
+		});
+		minRank = normalization.min;
+		maxRank = normalization.max;
+
+		// compute accumulated difference with the previous rank
+		float delta = run(nodePartitions, (begin, end, reduction) -> {
+			for (long idx = begin; idx < end; idx++) {
+				float current = currRank.get(idx);
+				if (current >= 0) {
+					reduction.sum += Math.abs(current - prevRank.get(idx));
+				}
+			}
+		}).sum;
+		if (isolated > 0) {
+			minRank = Math.min(minRank, isolatedRank);
+			maxRank = Math.max(maxRank, isolatedRank);
+			delta += isolated * Math.abs(isolatedRank - prevIsolated);
+		}
+		return delta;
+	}
+
+	/**
+	 * Dispatches the ranks along the outgoing links, adds up dangling rank, applies damping factor and adds
+	 * reset probability
+	 *
+	 * @return the sum of the new ranks of the nodes in the graph
+	 */
+	private float push(BigFloatArray prevRank, BigFloatArray currRank, float isolatedDangling) {
+		// accumulate RDF Rank for nodes
+		Reduction accumulation = run(edgePartitions, (begin, end, reduction) -> {
+			long edge = adjacency.begin(begin);
+			for (long idx = begin; idx < end; idx++) {
+				long last = adjacency.end(idx);
+				if (edge == last) {
+					// nowhere to go, rank is dispatched along the whole graph
+					reduction.sum += prevRank.get(idx);
+				} else {
+					float rankEmission = prevRank.get(idx) / (last - edge);
+					for (; edge < last; edge++) {
+						accumulated.add(adjacency.target(edge), rankEmission);
+					}
+				}
+			}
+		});
+		float danglingRank = (accumulation.sum + isolatedDangling) / (size + isolated);
+		isolatedRank = danglingRank * dampingFactor + resetProbability;
+
+		// add up dangling rank, apply damping factor and add reset probability
+		return run(nodePartitions, (begin, end, reduction) -> {
+			for (long idx = begin; idx < end; idx++) {
+				float value = accumulated.get(idx);
+				accumulated.set(idx, 0);
+				value += danglingRank;
+				value *= dampingFactor;
+				value += resetProbability;
+				currRank.set(idx, value);
+				reduction.sum += value;
+			}
+		}).sum;
+	}
+
+	/**
+	 * Gathers the ranks along the incoming links, adds up dangling rank, applies damping factor and adds reset
+	 * probability
+	 *
+	 * @return the sum of the new ranks of the nodes in the graph
+	 */
+	private float pull(BigFloatArray prevRank, BigFloatArray currRank, float isolatedDangling) {
+		Reduction dangling = run(nodePartitions, (begin, end, reduction) -> {
+			for (long idx = begin; idx < end; idx++) {
+				if (transposed.isDangling(idx)) {
+					reduction.sum += prevRank.get(idx);
+				}
+			}
+		});
+		float danglingRank = (dangling.sum + isolatedDangling) / (size + isolated);
+		isolatedRank = danglingRank * dampingFactor + resetProbability;
+
+		CSRAdjacency inbound = transposed.inbound();
+		return run(edgePartitions, (begin, end, reduction) -> {
+			long edge = inbound.begin(begin);
+			for (long idx = begin; idx < end; idx++) {
+				float value = 0;
+				for (long last = inbound.end(idx); edge < last; edge++) {
+					long source = inbound.target(edge);
+					value += prevRank.get(source) * transposed.weight(source);
+				}
+				value += danglingRank;
+				value *= dampingFactor;
+				value += resetProbability;
+				currRank.set(idx, value);
+				reduction.sum += value;
+			}
+		}).sum;
+	}
+
+	float getMinRank() {
+		return minRank;
+	}
+
+	float getMaxRank() {
+		return maxRank;
+	}
+
+	/**
+	 * Gets the rank of the IDs outside of the graph computed on the last iteration
+	 */
+	float getIsolatedRank() {
+		return isolatedRank;
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	private Reduction run(long[] partitions, Pass pass) {
+		return pool.invoke(new PassTask(partitions, 0, partitions.length - 1, pass));
+	}
+
+	/**
+	 * Splits the nodes into ranges with about the same number of edges and nodes
+	 *
+	 * @return the bounds of the ranges, range <i>i</i> is [bounds[i], bounds[i + 1])
+	 */
+	static long[] partitionByEdges(CSRAdjacency adjacency, int partitions) {
+		long nodes = adjacency.nodeCount();
+		// the cost of a range is its number of edges plus its number of nodes
+		long total = adjacency.edgeCount() + nodes;
+		long[] bounds = new long[partitions + 1];
+		for (int part = 1; part < partitions; part++) {
+			long target = total / partitions * part;
+			// find the first node whose cumulative cost reaches the target
+			long low = bounds[part - 1], high = nodes;
+			while (low < high) {
+				long mid = (low + high) >>> 1;
+				if (adjacency.begin(mid) + mid < target) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			bounds[part] = low;
+		}
+		bounds[partitions] = nodes;
+		return bounds;
+	}
+
+	/**
+	 * Splits the nodes into ranges with the same number of nodes
+	 *
+	 * @return the bounds of the ranges, range <i>i</i> is [bounds[i], bounds[i + 1])
+	 */
+	static long[] partitionByNodes(long nodes, int partitions) {
+		long[] bounds = new long[partitions + 1];
+		for (int part = 0; part <= partitions; part++) {
+			bounds[part] = nodes * part / partitions;
+		}
+		return bounds;
+	}
+
+	/**
+	 * Per-partition results of a pass
+	 */
+	static class Reduction {
+		float sum;
+		float min = Float.MAX_VALUE;
+		float max = -Float.MAX_VALUE;
+
+		Reduction combine(Reduction other) {
+			sum += other.sum;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+			return this;
+		}
+	}
+
+	interface Pass {
+		void run(long begin, long end, Reduction reduction);
+	}
+
+	/**
+	 * Splits the partitions in halves until a single partition is left, the results are combined in partition
+	 * order so that they do not depend on the scheduling
+	 */
+	private static class PassTask extends RecursiveTask<Reduction> {
+		private final long[] partitions;
+		private final int from, to;
+		private final Pass pass;
+
+		PassTask(long[] partitions, int from, int to, Pass pass) {
+			this.partitions = partitions;
+			this.from = from;
+			this.to = to;
+			this.pass = pass;
+		}
+
+		@Override
+		protected Reduction compute() {
+			if (to - from == 1) {
+				Reduction reduction = new Reduction();
+				pass.run(partitions[from], partitions[to], reduction);
+				return reduction;
+			}
+			int mid = (from + to) >>> 1;
+			PassTask left = new PassTask(partitions, from, mid, pass);
+			left.fork();
+			Reduction right = new PassTask(partitions, mid, to, pass).compute();
+			return left.join().combine(right);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Graph reader that drops the edges pointing to a set of excluded entity IDs, e.g. the literals, which are
+ * never ranked but would otherwise collect rank as dangling nodes
+ */
+class ProjectedGraphReader extends GraphReader {
+	private final GraphReader reader;
+	private final EntityBitmap excluded;
+	private long dropped;
+
+	ProjectedGraphReader(GraphReader reader, EntityBitmap excluded) {
+		this.reader = reader;
+		this.excluded = excluded;
+	}
+
+	@Override
+	public EntityBitmap getExcluded() {
+		return excluded;
+	}
+
+	/**
+	 * Gets the number of edges dropped since the last reset
+	 */
+	long getDropped() {
+		return dropped;
+	}
+
+	@Override
+	public long nodeCount() {
+		return reader.nodeCount();
+	}
+
+	/**
+	 * Gets the number of edges before the projection, as the dropped ones are known only after a pass
+	 */
+	@Override
+	public long size() {
+		return reader.size();
+	}
+
+	@Override
+	public void reset() {
+		reader.reset();
+		dropped = 0;
+	}
+
+	@Override
+	public List<GraphReader> partition(int count) {
+		List<GraphReader> partitions = reader.partition(count);
+		if (partitions.size() <= 1) {
+			return Collections.singletonList(this);
+		}
+		List<GraphReader> projected = new ArrayList<>(partitions.size());
+		for (GraphReader partition : partitions) {
+			projected.add(new ProjectedGraphReader(partition, excluded));
+		}
+		return projected;
+	}
+
+	@Override
+	public boolean next() {
+		while (reader.next()) {
+			if (excluded.get(reader.getTo())) {
+				dropped++;
+				continue;
+			}
+			from = reader.getFrom();
+			to = reader.getTo();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int nextBatch(long[] from, long[] to) {
+		int count;
+		do {
+			int read = reader.nextBatch(from, to);
+			if (read == 0) {
+				return 0;
+			}
+			// keep the edges to the IDs that are not excluded at the beginning of the arrays
+			count = 0;
+			for (int idx = 0; idx < read; idx++) {
+				if (!excluded.get(to[idx])) {
+					from[count] = from[idx];
+					to[count] = to[idx];
+					count++;
+				}
+			}
+			dropped += read - count;
+		} while (count == 0);
+		return count;
+	}
+
+	@Override
+	public void reportStatistics(RankStatistics statistics) {
+		reader.reportStatistics(statistics);
+	}
+
+	@Override
+	public void close() {
+		reader.close();
+	}
+}
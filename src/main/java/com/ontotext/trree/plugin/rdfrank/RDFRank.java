@@ -10,6 +10,22 @@ class RDFRank {
 	static final IRI SET_PARAM = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "setParam");
 	static final IRI MAX_ITERATIONS = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "maxIterations");
 	static final IRI EPSILON = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "epsilon");
+	static final IRI MEMORY_BUDGET = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "memoryBudget");
+	static final IRI PARALLELISM = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "parallelism");
+	static final IRI KERNEL = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "kernel");
+	static final IRI GRAPH_STORAGE = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "graphStorage");
+	static final IRI SCRATCH_DIR = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "scratchDir");
+	static final IRI MODE = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "mode");
+	static final IRI EXTRAPOLATION = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "extrapolation");
+	static final IRI EXTRAPOLATION_PERIOD = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "extrapolationPeriod");
+	static final IRI WARM_START = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "warmStart");
+	static final IRI DENSE_NODES = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "denseNodes");
+	static final IRI DISTINCT_EDGES = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "distinctEdges");
+	static final IRI PIPELINED_LOADING = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "pipelinedLoading");
+	static final IRI SNAPSHOT = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "snapshot");
+	static final IRI TRACK_CHANGES = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "trackChanges");
+	static final IRI INCREMENTAL_PUSH = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "incrementalPush");
+	static final IRI EXCLUDE_LITERALS = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "excludeLiterals");
 	static final IRI COMPUTE = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "compute");
 	static final IRI COMPUTE_INCREMENTAL = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "computeIncremental");
 	static final IRI COMPUTE_ASYNC = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "computeAsync");
@@ -20,6 +36,7 @@ class RDFRank {
 	static final IRI HAS_RDF_RANK_4 = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "hasRDFRank4");
 	static final IRI HAS_RDF_RANK_5 = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "hasRDFRank5");
 	static final IRI STATUS = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "status");
+	static final IRI STATISTICS = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "statistics");
 	static final IRI PRESENT = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "present");
 	static final IRI INTERRUPT = SimpleValueFactory.getInstance().createIRI(NAMESPACE + "interrupt");
 
@@ -1,19 +1,21 @@
 package com.ontotext.trree.plugin.rdfrank;
 
-import com.ontotext.trree.util.BigFloatArray;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Set;
 import java.util.Map;
 import java.util.HashSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 import com.ontotext.trree.sdk.*;
@@ -33,10 +35,16 @@ import static com.ontotext.trree.plugin.rdfrank.Configuration.RDFRankProperty.*;
  * on the PageRank algorithm applied on the repository graph. Computation and access to ranks is achieved
  * through system queries defined and interpreted by the plug-in.
  */
-public class RDFRankPlugin extends PluginBase implements PatternInterpreter, UpdateInterpreter, RDFRankProvider {
+public class RDFRankPlugin extends PluginBase implements PatternInterpreter, UpdateInterpreter, StatementListener,
+		PluginTransactionListener, RDFRankProvider {
 	private static final String STORAGE_FILE = "storage";
 	private static final String STATE_FILE = "state";
+	private static final String SNAPSHOT_FILE = "graph.snapshot";
+	private static final String DELTA_FILE = "graph.delta";
+	private static final String INBOUND_LINKS_FILE = "inbound.links";
 	private static final String TEMP_SUFFIX = ".temp";
+	// the statements read by a scan for the cost of looking up the links to a single entity
+	private static final long LOOKUP_COST = 1000;
 
 	private static final float DEFAULT_EPSILON = 0.01f;
 	private static final int DEFAULT_MAX_ITERATIONS = 20;
@@ -57,16 +65,60 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 	private long setParamID;
 	private long maxIterationsID;
 	private long epsilonID;
+	private long memoryBudgetID;
+	private long parallelismID;
+	private long kernelID;
+	private long graphStorageID;
+	private long scratchDirID;
+	private long modeID;
+	private long extrapolationID, extrapolationPeriodID;
+	private long warmStartID;
+	private long denseNodesID;
+	private long pipelinedLoadingID;
+	private long distinctEdgesID;
+	private long snapshotID;
+	private long trackChangesID;
+	private long incrementalPushID;
+	private long excludeLiteralsID;
 	private long computeID, computeIncrementalID;
 	private long computeAsyncID, computeIncrementalAsyncID;
 	private long exportID;
-	private long statusID, presentID, interruptID;
+	private long statusID, statisticsID, presentID, interruptID;
 	private long includedPredicates, includedGraphs, excludedPredicates, excludedGraphs, includeExplicit, includeImplicit, filtering;
 
 	private long contextId = 0;
 
 	private int maxIterations = DEFAULT_MAX_ITERATIONS;
 	private float epsilon = DEFAULT_EPSILON;
+	private int memoryBudget = 0;
+	private int parallelism = 1;
+	private RankComputer.Kernel kernel = RankComputer.Kernel.PUSH;
+	private RankComputer.GraphStorage graphStorage = RankComputer.GraphStorage.AUTO;
+	private String scratchDir = "";
+	private RankComputer.Mode mode = RankComputer.Mode.POWER;
+	private RankComputer.Extrapolation extrapolation = RankComputer.Extrapolation.NONE;
+	private int extrapolationPeriod = 10;
+	private boolean warmStart = false;
+	private boolean denseNodes = false;
+	private boolean pipelinedLoading = true;
+	private boolean distinctEdges = false;
+	private boolean snapshot = false;
+	// incremented on every change of the statements, a snapshot is published only if it has not changed meanwhile
+	private volatile long graphVersion = 0;
+	private volatile boolean snapshotDeleted = false;
+	private boolean trackChanges = false;
+	private boolean incrementalPush = false;
+	private DeltaLog deltaLog;
+	// the reader telling the edges among the changed statements in the current transaction, for the
+	// configuration with the given hash, and its IRIs that were not in the repository when built
+	private GraphReader changeFilter;
+	private int changeFilterConfiguration;
+	private List<Value> changeFilterUnresolved = new ArrayList<>();
+	private long changeFilterEntities;
+	private boolean excludeLiterals = false;
+	// the literal IDs found on the last computation without literals, only the newer IDs are checked again
+	private EntityBitmap literals = null;
+	private RankStatistics statistics = new RankStatistics();
 
 	private RankComputer computer = null;
 
@@ -94,12 +146,29 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		setParamID = entities.put(RDFRank.SET_PARAM, Scope.SYSTEM);
 		maxIterationsID = entities.put(RDFRank.MAX_ITERATIONS, Scope.SYSTEM);
 		epsilonID = entities.put(RDFRank.EPSILON, Scope.SYSTEM);
+		memoryBudgetID = entities.put(RDFRank.MEMORY_BUDGET, Scope.SYSTEM);
+		parallelismID = entities.put(RDFRank.PARALLELISM, Scope.SYSTEM);
+		kernelID = entities.put(RDFRank.KERNEL, Scope.SYSTEM);
+		graphStorageID = entities.put(RDFRank.GRAPH_STORAGE, Scope.SYSTEM);
+		scratchDirID = entities.put(RDFRank.SCRATCH_DIR, Scope.SYSTEM);
+		modeID = entities.put(RDFRank.MODE, Scope.SYSTEM);
+		extrapolationID = entities.put(RDFRank.EXTRAPOLATION, Scope.SYSTEM);
+		extrapolationPeriodID = entities.put(RDFRank.EXTRAPOLATION_PERIOD, Scope.SYSTEM);
+		warmStartID = entities.put(RDFRank.WARM_START, Scope.SYSTEM);
+		denseNodesID = entities.put(RDFRank.DENSE_NODES, Scope.SYSTEM);
+		pipelinedLoadingID = entities.put(RDFRank.PIPELINED_LOADING, Scope.SYSTEM);
+		distinctEdgesID = entities.put(RDFRank.DISTINCT_EDGES, Scope.SYSTEM);
+		snapshotID = entities.put(RDFRank.SNAPSHOT, Scope.SYSTEM);
+		trackChangesID = entities.put(RDFRank.TRACK_CHANGES, Scope.SYSTEM);
+		incrementalPushID = entities.put(RDFRank.INCREMENTAL_PUSH, Scope.SYSTEM);
+		excludeLiteralsID = entities.put(RDFRank.EXCLUDE_LITERALS, Scope.SYSTEM);
 		computeID = entities.put(RDFRank.COMPUTE, Scope.SYSTEM);
 		computeIncrementalID = entities.put(RDFRank.COMPUTE_INCREMENTAL, Scope.SYSTEM);
 		computeAsyncID = entities.put(RDFRank.COMPUTE_ASYNC, Scope.SYSTEM);
 		computeIncrementalAsyncID = entities.put(RDFRank.COMPUTE_ASYNC_INCREMENTAL, Scope.SYSTEM);
 		exportID = entities.put(RDFRank.EXPORT, Scope.SYSTEM);
 		statusID = entities.put(RDFRank.STATUS, Scope.SYSTEM);
+		statisticsID = entities.put(RDFRank.STATISTICS, Scope.SYSTEM);
 		presentID = entities.put(RDFRank.PRESENT, Scope.SYSTEM);
 		interruptID = entities.put(RDFRank.INTERRUPT, Scope.SYSTEM);
 
@@ -117,12 +186,21 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 	private void initializeStandAlone() {
 		executor = Executors.newSingleThreadExecutor();
 
+		// complete the incremental ranks written before a crash
+		try {
+			new FileRankWriter(getStorageFile()).recover();
+		} catch (IOException e) {
+			getLogger().warn("Cannot recover the incrementally computed ranks", e);
+		}
+
 		// prepare to read the ranks from binary file
 		rankReader = new FileRankReader(getStorageFile());
 		getDataDir().mkdirs();
 
 		configuration = new Configuration(getStateFile());
 		configuration.initialize();
+
+		deltaLog = new DeltaLog(new File(getDataDir(), DELTA_FILE));
 	}
 
 	@Override
@@ -165,6 +243,12 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 														.createLiteral(statusString), Entities.Scope.REQUEST);
 			return StatementIterator.create(subject, predicate, statusRequestEntity, context);
 		}
+		// statistics of the last computation
+		if (Utils.match(predicate, statisticsID)) {
+			long statisticsRequestEntity = pluginConnection.getEntities().put(SimpleValueFactory.getInstance()
+														.createLiteral(statistics.toString()), Entities.Scope.REQUEST);
+			return StatementIterator.create(subject, predicate, statisticsRequestEntity, context);
+		}
 		// present query. Basically checks that the plugin is initialized
 		if (Utils.match(predicate, presentID)) {
 			return StatementIterator.TRUE();
@@ -192,6 +276,120 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 				includedGraphs, excludedPredicates, excludedGraphs, includeExplicit, includeImplicit };
 	}
 
+	@Override
+	public boolean statementAdded(long subject, long predicate, long object, long context, boolean explicit,
+			PluginConnection pluginConnection) {
+		graphChanged(subject, predicate, object, context, explicit, pluginConnection, true);
+		return false;
+	}
+
+	@Override
+	public boolean statementRemoved(long subject, long predicate, long object, long context, boolean explicit,
+			PluginConnection pluginConnection) {
+		graphChanged(subject, predicate, object, context, explicit, pluginConnection, false);
+		return false;
+	}
+
+	/**
+	 * Logs the changed edge if the changes are tracked, otherwise invalidates the graph snapshot and the delta
+	 * log, on the first change only
+	 */
+	private void graphChanged(long subject, long predicate, long object, long context, boolean explicit,
+			PluginConnection pluginConnection, boolean added) {
+		graphVersion++;
+		if (snapshotDeleted) {
+			return;
+		}
+		if (!isSnapshot() || !isTrackChanges()) {
+			invalidateChanges();
+			return;
+		}
+		deltaLog.statementChanged(added ? 1 : -1);
+		if (getChangeFilter(pluginConnection).accepts(subject, predicate, object, context, explicit)) {
+			if (added) {
+				deltaLog.edgeAdded(subject, object);
+			} else {
+				deltaLog.edgeRemoved(subject, object);
+			}
+		}
+	}
+
+	/**
+	 * Gets the filter of the changed statements. The IRIs of the filter are resolved to the IDs of the
+	 * repository, an IRI not in it yet matches no statement until it is added. Only those IRIs are looked up
+	 * again when new entities appear, and the filter is built again when one of them is found.
+	 */
+	private GraphReader getChangeFilter(PluginConnection pluginConnection) {
+		Entities entities = pluginConnection.getEntities();
+		if (changeFilter == null || changeFilterConfiguration != configuration.hashCode()
+				|| isChangeFilterResolved(entities)) {
+			changeFilterUnresolved.clear();
+			changeFilter = getGraphReader(pluginConnection.getStatements(), entities, 0, value -> {
+				long id = entities.resolve(value);
+				if (id == 0) {
+					changeFilterUnresolved.add(value);
+				}
+				return id;
+			});
+			changeFilterConfiguration = configuration.hashCode();
+			changeFilterEntities = entities.size();
+		}
+		return changeFilter;
+	}
+
+	/**
+	 * Tells whether one of the IRIs of the change filter missing in the repository was added since checked last
+	 */
+	private boolean isChangeFilterResolved(Entities entities) {
+		if (changeFilterUnresolved.isEmpty() || changeFilterEntities == entities.size()) {
+			return false;
+		}
+		changeFilterEntities = entities.size();
+		for (Value value : changeFilterUnresolved) {
+			if (entities.resolve(value) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void transactionStarted(PluginConnection pluginConnection) {
+		// the filter is built with the entities of the transaction
+		changeFilter = null;
+	}
+
+	@Override
+	public void transactionCommit(PluginConnection pluginConnection) {
+		if (!deltaLog.commit()) {
+			invalidateChanges();
+		}
+	}
+
+	/**
+	 * Deletes the graph snapshot and the delta log, as the changes are no longer logged or some of them were
+	 * lost, so the ranks can no longer be updated from the log until the next full computation
+	 */
+	private void invalidateChanges() {
+		snapshotDeleted = true;
+		GraphSnapshot.delete(getSnapshotFile());
+		deltaLog.clear();
+		if (configuration.getRankedDelta() >= 0) {
+			configuration.setRankedDelta(-1);
+			configuration.save();
+		}
+	}
+
+	@Override
+	public void transactionCompleted(PluginConnection pluginConnection) {
+		deltaLog.rollback();
+	}
+
+	@Override
+	public void transactionAborted(PluginConnection pluginConnection) {
+		deltaLog.rollback();
+	}
+
 	@Override
 	public boolean interpretUpdate(long subject, long predicate, long object, long context, boolean isAddition,
 			boolean isExplicit, PluginConnection pluginConnection) {
@@ -210,6 +408,72 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 				setEpsilon(Utils.getFloat(pluginConnection.getEntities(), object));
 				return true;
 			}
+			if (Utils.match(subject, memoryBudgetID)) {
+				setMemoryBudget(Utils.getInteger(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, parallelismID)) {
+				setParallelism(Utils.getInteger(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, kernelID)) {
+				setKernel(parseOption(RankComputer.Kernel.class, Utils.getString(pluginConnection.getEntities(), object)));
+				return true;
+			}
+			if (Utils.match(subject, graphStorageID)) {
+				setGraphStorage(parseOption(RankComputer.GraphStorage.class,
+						Utils.getString(pluginConnection.getEntities(), object)));
+				return true;
+			}
+			if (Utils.match(subject, scratchDirID)) {
+				setScratchDir(Utils.getString(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, modeID)) {
+				setMode(parseOption(RankComputer.Mode.class, Utils.getString(pluginConnection.getEntities(), object)));
+				return true;
+			}
+			if (Utils.match(subject, extrapolationID)) {
+				setExtrapolation(parseOption(RankComputer.Extrapolation.class,
+						Utils.getString(pluginConnection.getEntities(), object)));
+				return true;
+			}
+			if (Utils.match(subject, extrapolationPeriodID)) {
+				setExtrapolationPeriod(Utils.getInteger(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, warmStartID)) {
+				setWarmStart(Utils.getBoolean(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, denseNodesID)) {
+				setDenseNodes(Utils.getBoolean(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, pipelinedLoadingID)) {
+				setPipelinedLoading(Utils.getBoolean(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, distinctEdgesID)) {
+				setDistinctEdges(Utils.getBoolean(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, snapshotID)) {
+				setSnapshot(Utils.getBoolean(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, trackChangesID)) {
+				setTrackChanges(Utils.getBoolean(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, incrementalPushID)) {
+				setIncrementalPush(Utils.getBoolean(pluginConnection.getEntities(), object));
+				return true;
+			}
+			if (Utils.match(subject, excludeLiteralsID)) {
+				setExcludeLiterals(Utils.getBoolean(pluginConnection.getEntities(), object));
+				return true;
+			}
 			if (Utils.match(subject, filtering)) {
 				configuration.setFilteringEnabled(Utils.getBoolean(pluginConnection.getEntities(), object));
 				configuration.save();
@@ -369,13 +633,186 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		epsilon = value;
 	}
 
+	/**
+	 * Gets the memory budget of the computation in megabytes, 0 means that a part of the free heap is used
+	 */
+	private int getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	private void setMemoryBudget(int value) {
+		memoryBudget = value;
+	}
+
+	/**
+	 * Gets the number of threads of the iterations, the asynchronous computations also read the partitions of
+	 * a filtered graph with as many threads
+	 */
+	private int getParallelism() {
+		return parallelism;
+	}
+
+	private void setParallelism(int value) {
+		parallelism = value;
+	}
+
+	private RankComputer.Kernel getKernel() {
+		return kernel;
+	}
+
+	private void setKernel(RankComputer.Kernel value) {
+		kernel = value;
+	}
+
+	private RankComputer.GraphStorage getGraphStorage() {
+		return graphStorage;
+	}
+
+	private void setGraphStorage(RankComputer.GraphStorage value) {
+		graphStorage = value;
+	}
+
+	/**
+	 * Gets the directory for the temporary files of the external sort, empty for the plugin data dir
+	 */
+	private String getScratchDir() {
+		return scratchDir;
+	}
+
+	private void setScratchDir(String value) {
+		scratchDir = value != null ? value.trim() : "";
+	}
+
+	private RankComputer.Mode getMode() {
+		return mode;
+	}
+
+	private void setMode(RankComputer.Mode value) {
+		mode = value;
+	}
+
+	private RankComputer.Extrapolation getExtrapolation() {
+		return extrapolation;
+	}
+
+	private void setExtrapolation(RankComputer.Extrapolation value) {
+		extrapolation = value;
+	}
+
+	/**
+	 * Gets the number of power iterations between two extrapolations
+	 */
+	private int getExtrapolationPeriod() {
+		return extrapolationPeriod;
+	}
+
+	private void setExtrapolationPeriod(int value) {
+		extrapolationPeriod = value;
+	}
+
+	private boolean isWarmStart() {
+		return warmStart;
+	}
+
+	private void setWarmStart(boolean value) {
+		warmStart = value;
+	}
+
+	private boolean isDenseNodes() {
+		return denseNodes;
+	}
+
+	private void setDenseNodes(boolean value) {
+		denseNodes = value;
+	}
+
+	/**
+	 * Gets whether the graph is read on a separate thread while loading, only the asynchronous computations
+	 * use it as they have thread-safe statements
+	 */
+	private boolean isPipelinedLoading() {
+		return pipelinedLoading;
+	}
+
+	private void setPipelinedLoading(boolean value) {
+		pipelinedLoading = value;
+	}
+
+	/**
+	 * Gets whether the duplicates of an edge, e.g. from several graphs or predicates, count as a single link
+	 */
+	private boolean isDistinctEdges() {
+		return distinctEdges;
+	}
+
+	private void setDistinctEdges(boolean value) {
+		distinctEdges = value;
+	}
+
+	/**
+	 * Gets whether the edges of the graph are kept in a snapshot, which is read instead of the repository
+	 * while the statements and the filter do not change
+	 */
+	private boolean isSnapshot() {
+		return snapshot;
+	}
+
+	private void setSnapshot(boolean value) {
+		snapshot = value;
+	}
+
+	/**
+	 * Gets whether the changed edges are logged and applied to the graph snapshot instead of dropping it
+	 */
+	private boolean isTrackChanges() {
+		return trackChanges;
+	}
+
+	private void setTrackChanges(boolean value) {
+		trackChanges = value;
+	}
+
+	/**
+	 * Gets whether the incremental computation updates the ranks of all nodes reached by the changed edges,
+	 * which needs the changes tracked since the last full computation
+	 */
+	private boolean isIncrementalPush() {
+		return incrementalPush;
+	}
+
+	private void setIncrementalPush(boolean value) {
+		incrementalPush = value;
+	}
+
+	private boolean isExcludeLiterals() {
+		return excludeLiterals;
+	}
+
+	private void setExcludeLiterals(boolean value) {
+		excludeLiterals = value;
+	}
+
+	/**
+	 * Parses the value of an option parameter, the values are the constant names in any case
+	 *
+	 * @throws PluginException if the value is not a constant of the option
+	 */
+	private static <T extends Enum<T>> T parseOption(Class<T> option, String value) {
+		try {
+			return Enum.valueOf(option, value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException | NullPointerException e) {
+			throw new PluginException("Invalid value '" + value + "', expected one of "
+					+ Arrays.toString(option.getEnumConstants()));
+		}
+	}
+
 	private synchronized void recomputeRankSync(PluginConnection pluginConnection) {
 		if (computationInProgress) {
 			getLogger().info("Computing RDFRank already in progress");
 		}
 		startComputation();
 		try {
-			recomputeRank(pluginConnection.getStatements(), pluginConnection.getEntities());
+			recomputeRank(pluginConnection.getStatements(), pluginConnection.getEntities(), false);
 		} finally {
 			computationInProgress = false;
 		}
@@ -387,7 +824,7 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		}
 		startComputation();
 		try {
-			recomputeIncrementalRank(pluginConnection.getStatements(), pluginConnection.getEntities());
+			recomputeIncrementalRank(pluginConnection.getStatements(), pluginConnection.getEntities(), false);
 		} catch (IOException t) {
 			fail(t.getMessage());
 		} finally {
@@ -414,7 +851,7 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		executor.submit(() -> {
 			startComputation();
 			try {
-				recomputeRank(threadSafeStatements, threadSafeEntities);
+				recomputeRank(threadSafeStatements, threadSafeEntities, true);
 			} catch (Throwable t) {
 				error = t;
 				fail(t.getMessage());
@@ -425,21 +862,46 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		});
 	}
 
-	private void recomputeRank(Statements statements, Entities entities) {
-		getLogger().info("Computing RDF rank with epsilon={} max-iterations={}", epsilon, maxIterations);
+	/**
+	 * @param threadSafe whether the statements and the entities may be used from another thread
+	 */
+	private void recomputeRank(Statements statements, Entities entities, boolean threadSafe) {
+		boolean pipelined = threadSafe && isPipelinedLoading();
+		getLogger().info("Computing RDF rank with epsilon={} max-iterations={} mode={} extrapolation={} parallelism={} "
+				+ "kernel={} graph-storage={} exclude-literals={} distinct-edges={} pipelined-loading={}", epsilon,
+				maxIterations, mode, extrapolation, parallelism, kernel, graphStorage, excludeLiterals, distinctEdges,
+				pipelined);
 
 		// create our plugin directory
 		getDataDir().mkdirs();
+		// the ranks match no position of the delta log until the computation completes
+		configuration.setRankedDelta(-1);
+		configuration.save();
 
 		// prepare for reading of the whole repository
-		BigFloatArray ranks;
-		try (GraphReader reader = getGraphReader(statements, entities)) {
+		RankVector ranks;
+		try (GraphReader reader = getRankedGraphReader(statements, entities)) {
 			// load the graph and compute ranks
 			computer = new RankComputer();
 			computer.setMaxIterations(getMaxIterations());
 			computer.setEpsilon(getEpsilon());
+			computer.setMemoryBudget((long) getMemoryBudget() << 20);
+			computer.setParallelism(getParallelism());
+			computer.setKernel(getKernel());
+			computer.setGraphStorage(getGraphStorage());
+			computer.setScratchDir(getScratchDir().isEmpty() ? null : new File(getScratchDir()));
+			computer.setMode(getMode());
+			computer.setExtrapolation(getExtrapolation());
+			computer.setExtrapolationPeriod(getExtrapolationPeriod());
+			computer.setDenseNodes(isDenseNodes());
+			computer.setPipelinedLoading(pipelined);
+			computer.setLoadingParallelism(threadSafe ? getParallelism() : 1);
+			computer.setDistinctEdges(isDistinctEdges());
 			computer.setDataDir(getDataDir());
 			computer.setEntityBitSize(entities.getEntityIdSize());
+			if (isWarmStart() && rankReader.size() > 0) {
+				computer.setInitialRanks(rankReader);
+			}
 			ranks = computer.compute(reader);
 		}
 		// If the computation is interrupted before completion the ranks will be an empty array
@@ -447,6 +909,13 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 			computer = null;
 			return;
 		} else {
+			statistics = computer.getStatistics();
+			reportIterations(statistics);
+			// the snapshot read by the computation has all changes before it applied, the log keeps the later ones
+			Object snapshotUse = statistics.get("snapshot");
+			if ("reused".equals(snapshotUse) || "recorded".equals(snapshotUse)) {
+				configuration.setRankedDelta(0);
+			}
 			// We want to persist the rank properties only if the computation has not been canceled.
 			persistMinMaxRankProperties();
 			computer = null;
@@ -500,7 +969,7 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		executor.submit(() -> {
 			startComputation();
 			try {
-				recomputeIncrementalRank(threadSafeStatements, threadSafeEntities);
+				recomputeIncrementalRank(threadSafeStatements, threadSafeEntities, true);
 			} catch (Throwable t) {
 				error = t;
 				fail(t.getMessage());
@@ -516,10 +985,12 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 	 * repo during the last proper recomputeRank) Note: The thus calculated pseudo-ranks are appended to the
 	 * ranks file, so that subsequent reload()s will consider them ranks proper, which they are not!
 	 *
+	 * @param threadSafe whether the statements and the entities may be used from another thread
 	 * @throws IOException
 	 *             in case writing to the ranks file failed
 	 */
-	private void recomputeIncrementalRank(Statements statements, Entities entities) throws IOException {
+	private void recomputeIncrementalRank(Statements statements, Entities entities, boolean threadSafe)
+			throws IOException {
 		getLogger().info("Incrementally computing RDF rank");
 
 		if (!new File(getStorageFile()).exists()) {
@@ -530,21 +1001,18 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		long begId = rankReader.size(); // first entity to incrementally rank
 		long endId = entities.size() + 1; // one-after the last entity to rank
 
+		// the changed links are pushed even if there are no new nodes
+		if (isIncrementalPush() && pushIncrementalRank(statements, entities, begId, Math.max(begId, endId))) {
+			return;
+		}
+
 		if (begId >= endId || endId <= lastRankedId() + 1) {
 			getLogger().info("Nothing to be recomputed");
 			// nothing to be recomputed
 			return;
 		}
 
-		if (endId - begId > 100000000) { // 100M!
-			fail("Incremental rank recomputation invoked on more than 100M new nodes");
-		}
-
-		int size = (int) (endId - begId);
-		int[] nInboundLinks = new int[size];
-		int[] nStableInboundLinks = new int[size];
-		char[] stableInboundRank = new char[size];
-		int maxLinks = 0, maxStableLinks = 0;
+		long maxLinks = 0, maxStableLinks = 0;
 		double minOldRank, maxOldRank;
 		try {
 			minOldRank = configuration.getMinRank();
@@ -557,155 +1025,304 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 
 
 		getLogger().info("Begin parsing of {} entities", (endId - begId));
-		// loop over nodes [begId, endId) to count:
-		// - nInboundLinks
-		// - nStableInboundLinks
-		// - stableInboundRank
-		for (long id = begId; id < endId; id++) {
-			if (interrupt) {
-				return;
-			}
-			long nLinks = 0;
-			long nStableLinks = 0;
-			double stableRank = .0;
-
-			try (GraphReader gr = getGraphReader(statements, entities, id)) {
-				gr.reset();
-				while (gr.next()) {
-					nLinks++;
-					if (gr.from < begId) {
-						nStableLinks++;
-						double subjRank = getRank(gr.from);
-						stableRank += subjRank;
-					}
-				}
+		// count the inbound links, the stable inbound links and the stable inbound rank
+		InboundLinks links = countInboundLinks(statements, entities, begId, endId, threadSafe);
+		if (links == null) {
+			return;
+		}
+		long nextFingerprint = getFingerprint();
+		try {
+			for (long id = begId; id < endId; id++) {
+				maxLinks = Math.max(maxLinks, links.getLinks(id));
+				maxStableLinks = Math.max(maxStableLinks, links.getStableLinks(id));
 			}
 
-			if (maxLinks < nLinks) {
-				maxLinks = (int) nLinks;
-			}
-			if (maxStableLinks < nStableLinks) {
-				maxStableLinks = (int) nStableLinks;
+			if (maxLinks == 0) {
+				// no incoming links into any of the new nodes -- really nothing to compute
+				persistLastRankedID(endId - 1);
+				return;
 			}
 
-			if (nLinks > Integer.MAX_VALUE) {
-				fail("Incremental rank recomputation invoked on too densely-connected set of new nodes");
-			}
+			double minNewRank = 1, maxNewRank = 0;
 
-			int idx = (int) (id - begId);
-			nInboundLinks[idx] = (int) nLinks;
-			nStableInboundLinks[idx] = (int) nStableLinks;
+			getLogger().info("Begin rank computation");
+			// First pass:
+			// loop over nodes [begId, endId) to find the range of the incremental ranks, they are computed
+			// again from the counted links when written
+			for (long id = begId; id < endId; id++) {
+				double finalRank = getIncrementalRank(links, id, maxLinks);
+				if (finalRank < minNewRank) {
+					minNewRank = finalRank;
+				}
+				if (finalRank > maxNewRank) {
+					maxNewRank = finalRank;
+				}
+				if (interrupt) {
+					return;
+				}
+			}
 
-			double norm = (nStableLinks != 0 ? stableRank / nStableLinks : 0);
-			assert 0 <= norm && norm <= 1 : norm;
-			if (norm < 0) {
-				norm = 0;
-			} else if (norm > 1) {
-				norm = 1;
+			getLogger().info("Begin rank normalization");
+			// Second pass:
+			// What we do next is to distribute the new rank values in a more wide interval
+			// *but* which is strictly confined within the old interval [minOldRank, maxOldRank]
+			double minAdjRank = minNewRank < minOldRank ? minOldRank : 0.5 * (minNewRank + minOldRank);
+			double maxAdjRank = maxNewRank > maxOldRank ? maxOldRank : 0.5 * (maxNewRank + maxOldRank);
+
+			try (FileRankWriter.Segment segment = new FileRankWriter(getStorageFile()).segment()) {
+				if ((maxNewRank - minNewRank) > 0.0001) {
+					// calculate the (static) redistribution quotients r & q:
+					double q = (maxAdjRank - minAdjRank) / (maxNewRank - minNewRank);
+					double r = minAdjRank - minNewRank * q;
+					for (long id = begId; id < endId; id++) {
+						// the ranks are written with 16 bits of precision
+						double finalRank = (double) (char) (getIncrementalRank(links, id, maxLinks)
+								* Character.MAX_VALUE) / Character.MAX_VALUE;
+						assert (minNewRank <= finalRank && finalRank <= maxNewRank);
+						double adjRank = finalRank * q + r;
+						assert (minOldRank <= adjRank && adjRank <= maxOldRank);
+
+						segment.put(id, adjRank);
+						nextFingerprint ^= Double.doubleToLongBits(id * (adjRank + 1));
+						// If we need to interrupt we leave the calculated to far ranks and store them
+						if (interrupt) {
+							break;
+						}
+					}
+				} else {
+					for (long id = begId; id < endId; id++) {
+						assert (minOldRank <= maxAdjRank);
+
+						segment.put(id, maxAdjRank);
+						nextFingerprint ^= Double.doubleToLongBits(id * (maxAdjRank + 1));
+						// If we need to interrupt we leave the calculated to far ranks and store them
+						if (interrupt) {
+							break;
+						}
+					}
+				}
+				synchronized (rankReader) {
+					rankReader.update(segment::commit);
+				}
 			}
-			stableInboundRank[idx] = (char) (norm * Character.MAX_VALUE);
+		} finally {
+			links.close();
 		}
+		setFingerprint(nextFingerprint);
+		getLogger().info("Incremental rank computed");
+	}
 
-		if (maxLinks == 0) {
-			// no incoming links into any of the new nodes -- really nothing to compute
-			persistLastRankedID(endId - 1);
-			return;
+	/**
+	 * Computes the rank of a new ID from its inbound links, the share of the links from the ranked IDs weighting
+	 * their average rank against the number of links
+	 */
+	private static double getIncrementalRank(InboundLinks links, long id, long maxLinks) {
+		double norm = links.getStableRank(id);
+		assert 0 <= norm && norm <= 1 : norm;
+		if (norm < 0) {
+			norm = 0;
+		} else if (norm > 1) {
+			norm = 1;
 		}
-
-		double minNewRank = 1, maxNewRank = 0;
-
-		getLogger().info("Begin rank computation");
-		// First pass:
-		// loop over nodes [begId, endId) to calculate incremental rank and write it to file.
-		for (long id = begId; id < endId; id++) {
-			int idx = (int) (id - begId);
-			double simpleRank = (double) nInboundLinks[idx] / maxLinks;
-			double c = (nInboundLinks[idx] != 0 ? (double) nStableInboundLinks[idx] / nInboundLinks[idx] : 0);
-			assert (0 <= c && c <= 1) : c;
-			double stableRank = (double) stableInboundRank[idx] / Character.MAX_VALUE;
-			double finalRank = c * stableRank + (1 - c) * simpleRank;
-			assert (0 <= finalRank && finalRank <= 1) : finalRank;
-			if (finalRank < 0) {
-				finalRank = minNewRank = 0;
-			} else if (finalRank > 1) {
-				finalRank = maxNewRank = 1;
-			}
-			if (finalRank < minNewRank) {
-				minNewRank = finalRank;
-			}
-			if (finalRank > maxNewRank) {
-				maxNewRank = finalRank;
-			}
-
-			stableInboundRank[idx] = (char) (finalRank * Character.MAX_VALUE);
-			if (interrupt) {
-				return;
-			}
+		// the stable rank is used with 16 bits of precision
+		double stableRank = (double) (char) (norm * Character.MAX_VALUE) / Character.MAX_VALUE;
+		long inbound = links.getLinks(id);
+		double simpleRank = (double) inbound / maxLinks;
+		double c = (inbound != 0 ? (double) links.getStableLinks(id) / inbound : 0);
+		assert (0 <= c && c <= 1) : c;
+		double finalRank = c * stableRank + (1 - c) * simpleRank;
+		assert (0 <= finalRank && finalRank <= 1) : finalRank;
+		if (finalRank < 0) {
+			return 0;
 		}
+		return Math.min(finalRank, 1);
+	}
 
-		getLogger().info("Begin rank normalization");
-		// Second pass:
-		// What we do next is to distribute the new rank values in a more wide interval
-		// *but* which is strictly confined within the old interval [minOldRank, maxOldRank]
-		double minAdjRank = minNewRank < minOldRank ? minOldRank : 0.5 * (minNewRank + minOldRank);
-		double maxAdjRank = maxNewRank > maxOldRank ? maxOldRank : 0.5 * (maxNewRank + maxOldRank);
-
-		RandomAccessFile raf = new RandomAccessFile(getStorageFile(), "rw");
-		long nextFingerprint = getFingerprint();
+	/**
+	 * Counts the links to the new IDs. The links are found by a single scan of the graph, read on several
+	 * threads if the statements are thread-safe, unless there are so few new IDs that looking up the links to
+	 * each of them reads less. The counts are kept in a temporary file in the scratch directory.
+	 *
+	 * @return the counted links, to be closed, or <code>null</code> if interrupted
+	 */
+	private InboundLinks countInboundLinks(Statements statements, Entities entities, long begId, long endId,
+			boolean threadSafe) {
+		File dir = getScratchDir().isEmpty() ? getDataDir() : new File(getScratchDir());
+		InboundLinks links = new InboundLinks(begId, endId, this::getRank, new File(dir, INBOUND_LINKS_FILE));
+		// the file is deleted unless the counted links are returned
+		boolean counted = false;
 		try {
-			setFilePointerToFileEnd(raf);
-
-			if ((maxNewRank - minNewRank) > 0.0001) {
-				// calculate the (static) redistribution quotients r & q:
-				double q = (maxAdjRank - minAdjRank) / (maxNewRank - minNewRank);
-				double r = minAdjRank - minNewRank * q;
+			if ((endId - begId) * LOOKUP_COST < statements.estimateSize(0, 0, 0, 0)) {
+				long[] from = new long[GraphReader.BATCH_SIZE];
+				long[] to = new long[GraphReader.BATCH_SIZE];
 				for (long id = begId; id < endId; id++) {
-					int idx = (int) (id - begId);
-					double finalRank = (double) stableInboundRank[idx] / Character.MAX_VALUE;
-					assert (minNewRank <= finalRank && finalRank <= maxNewRank);
-					double adjRank = finalRank * q + r;
-					assert (minOldRank <= adjRank && adjRank <= maxOldRank);
-
-					raf.writeInt((int) id);
-					raf.writeDouble(adjRank);
-					nextFingerprint ^= Double.doubleToLongBits(id * (adjRank + 1));
-					// If we need to interrupt we leave the calculated to far ranks and store them
 					if (interrupt) {
-						break;
+						return null;
+					}
+					try (GraphReader gr = getGraphReader(statements, entities, id)) {
+						gr.reset();
+						for (int batch; (batch = gr.nextBatch(from, to)) > 0;) {
+							for (int idx = 0; idx < batch; idx++) {
+								links.add(from[idx], to[idx]);
+							}
+						}
 					}
 				}
 			} else {
-				for (long id = begId; id < endId; id++) {
-					assert (minOldRank <= maxAdjRank);
-
-					raf.writeInt((int) id);
-					raf.writeDouble(maxAdjRank);
-					nextFingerprint ^= Double.doubleToLongBits(id * (maxAdjRank + 1));
-					// If we need to interrupt we leave the calculated to far ranks and store them
-					if (interrupt) {
-						break;
+				int parallelism = threadSafe ? getParallelism() : 1;
+				getLogger().info("Scanning the graph for the links to the new entities on {} threads", parallelism);
+				try (GraphReader gr = getGraphReader(statements, entities);
+						EdgeBatchReader edges = parallelism > 1
+								? EdgeBatchReader.parallel(gr.partition(parallelism), null,
+										RankComputer.PIPELINE_DEPTH)
+								: EdgeBatchReader.sequential(gr, null)) {
+					for (EdgeBatchReader.Batch batch; (batch = edges.next()) != null;) {
+						if (interrupt) {
+							return null;
+						}
+						for (int idx = 0; idx < batch.size; idx++) {
+							links.add(batch.from[idx], batch.to[idx]);
+						}
 					}
 				}
 			}
+			links.finish();
+			counted = true;
+			return links;
 		} finally {
-			raf.close();
+			if (!counted) {
+				links.close();
+			}
+		}
+	}
+
+	/**
+	 * Updates the ranks with the changes logged since the last full computation, pushing residuals from the
+	 * changed nodes, see {@link IncrementalRank}
+	 *
+	 * @return <code>false</code> if the changes are not known and the new nodes have to be ranked from their links
+	 */
+	private boolean pushIncrementalRank(Statements statements, Entities entities, long begId, long endId)
+			throws IOException {
+		long position = configuration.getRankedDelta();
+		// a position past the end of the log means the log was started again and some changes are missing
+		if (!isSnapshot() || !isTrackChanges() || position < 0 || position > deltaLog.length()
+				|| !getSnapshotFile().isFile() || isDistinctEdges() || configurationOutdated()) {
+			getLogger().info("The changed edges are not tracked since the last full computation, ranking only the "
+					+ "new nodes. Tracking needs a snapshot, no distinct edges and a full computation afterwards.");
+			return false;
+		}
+		GraphReader filter = getGraphReader(statements, entities);
+		boolean excludeLiterals = isExcludeLiterals();
+		// the ranks are spread over the same nodes as in a full computation, which leaves out the literals
+		long nodes = excludeLiterals ? endId - getLiterals(entities, endId).count() : endId;
+		IncrementalRank incremental = new IncrementalRank(
+				id -> getTargets(statements, entities, filter, id),
+				this::getRank, nodes, RankComputer.DAMPING_FACTOR, getEpsilon());
+		long[] length = { position };
+		deltaLog.read(new DeltaLog.Visitor() {
+			@Override
+			public void added(long from, long to) {
+				if (!excludeLiterals || entities.getType(to) != Entities.Type.LITERAL) {
+					incremental.added(from, to);
+				}
+			}
+
+			@Override
+			public void removed(long from, long to) {
+				if (!excludeLiterals || entities.getType(to) != Entities.Type.LITERAL) {
+					incremental.removed(from, to);
+				}
+			}
+
+			@Override
+			public void committed(long statements, long end) {
+				length[0] = end;
+			}
+		}, position);
+		for (long id = begId; id < endId; id++) {
+			if (!excludeLiterals || !literals.get(id)) {
+				incremental.nodeAdded(id);
+			}
+		}
+		if (!incremental.compute(() -> interrupt)) {
+			return true;
+		}
+
+		// the changed ranks of the ranked IDs are written in place, the ranks of the new IDs are appended, both
+		// in a single segment
+		long[] changed = incremental.getChangedNodes();
+		long nextFingerprint = getFingerprint();
+		double minRank = configuration.getMinRank(), maxRank = configuration.getMaxRank();
+		try (FileRankWriter.Segment segment = new FileRankWriter(getStorageFile()).segment()) {
+			for (int idx = 0; idx < changed.length && changed[idx] < begId; idx++) {
+				long id = changed[idx];
+				double previous = getRank(id);
+				double rank = incremental.getRank(id);
+				segment.put(id, rank);
+				nextFingerprint ^= Double.doubleToLongBits(id * (previous + 1))
+						^ Double.doubleToLongBits(id * (rank + 1));
+				minRank = Math.min(minRank, rank);
+				maxRank = Math.max(maxRank, rank);
+			}
+			for (long id = begId; id < endId; id++) {
+				double rank = incremental.getRank(id);
+				segment.put(id, rank);
+				nextFingerprint ^= Double.doubleToLongBits(id * (rank + 1));
+				minRank = Math.min(minRank, rank);
+				maxRank = Math.max(maxRank, rank);
+			}
+			synchronized (rankReader) {
+				rankReader.update(segment::commit);
+			}
 		}
 		setFingerprint(nextFingerprint);
+		configuration.setMinRank(minRank);
+		configuration.setMaxRank(maxRank);
+		configuration.setRankedDelta(length[0]);
+		configuration.save();
 
-		synchronized (rankReader) {
-			rankReader.reload();
+		statistics = new RankStatistics();
+		statistics.set("incremental", "push");
+		statistics.set("changedNodes", changed.length);
+		statistics.set("pushes", incremental.getPushes());
+		statistics.set("pushedEdges", incremental.getPushedEdges());
+		statistics.set("uniformResidual", RankUtils.formatWithDigits(incremental.getUniformResidual(), 3));
+		if (Math.abs(incremental.getUniformResidual()) > incremental.getThreshold()) {
+			getLogger().warn("The rank of the nodes that gained or lost all of their links is left out, "
+					+ "a full computation is advised");
 		}
+		getLogger().info("Pushed residuals {} times along {} edges, {} ranks changed", incremental.getPushes(),
+				incremental.getPushedEdges(), changed.length);
 		getLogger().info("Incremental rank computed");
+		return true;
 	}
 
 	/**
-	 * Sets the file pointer to the end of the file
-	 *
-	 * @param raf
-	 * @throws IOException if an I/O error occurs when working with the file
+	 * Gets the targets of the out-links of a node in the ranked graph
 	 */
-	private void setFilePointerToFileEnd(RandomAccessFile raf) throws IOException {
-		raf.seek(raf.length());
+	private long[] getTargets(Statements statements, Entities entities, GraphReader filter, long id) {
+		long[] targets = new long[8];
+		int count = 0;
+		StatementIterator iterator = statements.get(id, 0, 0, 0);
+		try {
+			while (iterator.next()) {
+				if (!filter.accepts(iterator.subject, iterator.predicate, iterator.object, iterator.context,
+						iterator.isExplicit())) {
+					continue;
+				}
+				if (isExcludeLiterals() && entities.getType(iterator.object) == Entities.Type.LITERAL) {
+					continue;
+				}
+				if (count == targets.length) {
+					targets = Arrays.copyOf(targets, count * 2);
+				}
+				targets[count++] = iterator.object;
+			}
+		} finally {
+			iterator.close();
+		}
+		return Arrays.copyOf(targets, count);
 	}
 
 	private void exportRank(String path, Entities entities) throws IOException {
@@ -728,6 +1345,10 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		return getStorageFile() + TEMP_SUFFIX;
 	}
 
+	private File getSnapshotFile() {
+		return new File(getDataDir(), SNAPSHOT_FILE);
+	}
+
 	private String getStateFile() {
 		return getDataDir() + File.separator + STATE_FILE;
 	}
@@ -772,6 +1393,49 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		return getGraphReader(statements, entities, 0);
 	}
 
+	/**
+	 * Creates the reader of the graph for a full computation, which leaves out the edges to literals if
+	 * requested. The literals are not ranked anyway.
+	 */
+	private GraphReader getRankedGraphReader(Statements statements, Entities entities) {
+		GraphReader reader = isSnapshot() ? getSnapshotGraphReader(statements, entities)
+				: getGraphReader(statements, entities);
+		if (!isExcludeLiterals()) {
+			return reader;
+		}
+		EntityBitmap excluded = getLiterals(entities, entities.size() + 1);
+		getLogger().info("Excluding {} literals from the graph", excluded.count());
+		return new ProjectedGraphReader(reader, excluded);
+	}
+
+	/**
+	 * Gets the bitmap of the literal IDs below an ID, only the IDs newer than the last bitmap are checked
+	 */
+	private EntityBitmap getLiterals(Entities entities, long size) {
+		literals = EntityBitmap.of(size, id -> id > 0 && entities.getType(id) == Entities.Type.LITERAL, literals);
+		return literals;
+	}
+
+	/**
+	 * Creates a reader of the graph snapshot if it is valid for the filter and the statements, otherwise a
+	 * reader of the repository that records a new snapshot
+	 */
+	private GraphReader getSnapshotGraphReader(Statements statements, Entities entities) {
+		File file = getSnapshotFile();
+		long filter = configuration.hashCode();
+		long state = statements.estimateSize(0, 0, 0, 0);
+		GraphSnapshot graphSnapshot = GraphSnapshot.open(file, filter, state, deltaLog);
+		if (graphSnapshot != null) {
+			getLogger().info("Reading {} edges from the graph snapshot", graphSnapshot.edgeCount());
+			return graphSnapshot.reader(entities.size());
+		}
+		getLogger().info("Recording a new graph snapshot");
+		long version = graphVersion;
+		snapshotDeleted = false;
+		return new GraphSnapshot.Recorder(getGraphReader(statements, entities), file, filter, state,
+				entities.getEntityIdSize(), () -> graphVersion == version, deltaLog);
+	}
+
 	/**
 	 * Creates a {@link FilteredGraphReader} instance using the properties in the configuration object
 	 *
@@ -780,6 +1444,14 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 	 * @return
 	 */
 	private GraphReader getGraphReader(Statements statements, Entities entities, long object) {
+		return getGraphReader(statements, entities, object, value -> entities.put(value, Scope.REQUEST));
+	}
+
+	/**
+	 * Creates the reader of the graph with the filter IRIs resolved to IDs by the given function
+	 */
+	private GraphReader getGraphReader(Statements statements, Entities entities, long object,
+			ToLongFunction<Value> ids) {
 		if (!configuration.getFilteringEnabled()) {
 			return new OwlimGraphReader(statements, entities, object);
 		}
@@ -793,10 +1465,10 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 
 		return new FilteredGraphReader(statements,
 				entities,
-				createPredicatesList(c1, entities),
-				createGraphList(c2, entities),
-				createPredicatesList(c3, entities),
-				createGraphList(c4, entities),
+				createPredicatesList(c1, ids),
+				createGraphList(c2, ids),
+				createPredicatesList(c3, ids),
+				createGraphList(c4, ids),
 				includeExplicit,
 				includeImplicit,
 				object);
@@ -878,32 +1550,32 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 	}
 
 	/**
-	 * Converts Collection of Value to Set of Long using the entities object to resolve Value to Long<br>
+	 * Converts Collection of Value to Set of Long using the given function to resolve Value to Long<br>
 	 *     Used to create a set representing filter list with Predicate ids.
 	 *
 	 * @param collection
-	 * @param entities
+	 * @param ids resolves a value to its ID
 	 * @return
 	 */
-	private Set<Long> createPredicatesList(Collection<Value> collection, Entities entities) {
-		return collection.stream().map(value -> entities.put(value, Scope.REQUEST)).collect(Collectors.toSet());
+	private Set<Long> createPredicatesList(Collection<Value> collection, ToLongFunction<Value> ids) {
+		return collection.stream().map(ids::applyAsLong).collect(Collectors.toSet());
 	}
 
 	/**
-	 * Converts Collection of Value to Set of Long using the entities object to resolve Value to Long<br>
+	 * Converts Collection of Value to Set of Long using the given function to resolve Value to Long<br>
 	 *     Used to create a set representing filter list with Graphs ids. Applies any special mapping between
 	 *     Graph
 	 *
 	 * @param collection
-	 * @param entities
+	 * @param ids resolves a value to its ID
 	 * @return
 	 */
-	private Set<Long> createGraphList(Collection<Value> collection, Entities entities) {
+	private Set<Long> createGraphList(Collection<Value> collection, ToLongFunction<Value> ids) {
 		Set<Long> result = new HashSet<>(collection.size());
 		for (Value value : collection) {
 			result.add(specialGraphsMapping.containsKey(value)
 					? specialGraphsMapping.get(value)
-					: entities.put(value, Scope.REQUEST));
+					: ids.applyAsLong(value));
 		}
 		return result;
 	}
@@ -930,6 +1602,26 @@ public class RDFRankPlugin extends PluginBase implements PatternInterpreter, Upd
 		return property;
 	}
 
+	/**
+	 * Logs the iterations saved by a warm start compared to the last computation started from the uniform ranks,
+	 * which is remembered for the next warm starts
+	 */
+	private void reportIterations(RankStatistics statistics) {
+		long iterations = statistics.getLong("iterations");
+		if (Boolean.TRUE.equals(statistics.get("warmStart"))) {
+			long coldStartIterations = configuration.getColdStartIterations();
+			if (coldStartIterations > 0) {
+				statistics.set("savedIterations", coldStartIterations - iterations);
+				getLogger().info("Warm start took {} iterations, the last computation from the uniform ranks took {}",
+						iterations, coldStartIterations);
+			} else {
+				getLogger().info("Warm start took {} iterations", iterations);
+			}
+		} else {
+			configuration.setColdStartIterations(iterations);
+		}
+	}
+
 	/**
 	 * Saves the current Min and Max rank in order to be used later in case of incremental computation.
 	 */
@@ -2,19 +2,134 @@ package com.ontotext.trree.plugin.rdfrank;
 
 import com.ontotext.trree.util.BigFloatArray;
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
 
 import com.ontotext.trree.sdk.PluginException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 class RankComputer {
+	/**
+	 * The way the rank is dispatched along the links on each iteration
+	 */
+	enum Kernel {
+		/**
+		 * Every node adds its rank to the ranks of its out-neighbours
+		 */
+		PUSH,
+
+		/**
+		 * Every node gathers the ranks of its in-neighbours over the transposed graph
+		 */
+		PULL
+	}
+
+	/**
+	 * The method used to compute the ranks
+	 */
+	enum Mode {
+		/**
+		 * Power iterations over all nodes and links
+		 */
+		POWER,
+
+		/**
+		 * Pushes only the nodes with a residual above a threshold derived from epsilon, see
+		 * {@link ResidualIteration}
+		 */
+		RESIDUAL,
+
+		/**
+		 * Updates the ranks in place over the transposed graph, see {@link GaussSeidelIteration}
+		 */
+		GAUSS_SEIDEL
+	}
+
+	/**
+	 * The place where the graph is kept during the iterations
+	 */
+	enum GraphStorage {
+		/**
+		 * In memory if it fits in the available memory, otherwise in an edge file
+		 */
+		AUTO,
+
+		/**
+		 * Always in memory, fails if the graph does not fit in the available memory
+		 */
+		MEMORY,
+
+		/**
+		 * In a disk-based {@link TableStorage}, looked up row by row
+		 */
+		TABLE,
+
+		/**
+		 * In an {@link EdgeFile} sorted by source and streamed sequentially on each iteration
+		 */
+		STREAM
+	}
+
+	/**
+	 * The extrapolation applied periodically to the power iterations, see {@link RankExtrapolator}
+	 */
+	enum Extrapolation {
+		NONE(0),
+
+		/**
+		 * Aitken delta-squared process over the last three iterates
+		 */
+		AITKEN(1),
+
+		/**
+		 * Quadratic extrapolation over the last four iterates
+		 */
+		QUADRATIC(2);
+
+		private final int history;
+
+		Extrapolation(int history) {
+			this.history = history;
+		}
+
+		/**
+		 * Gets the number of rank vectors needed in addition to the ones of the power iterations
+		 */
+		int history() {
+			return history;
+		}
+	}
+
+	static final float DAMPING_FACTOR = 0.85f;
+
+	// part of the free heap used for the computation when no memory budget is configured
+	private static final double AUTO_MEMORY_FRACTION = 0.8;
+	// the number of batches read ahead by the pipelined loading
+	static final int PIPELINE_DEPTH = 8;
+
 	private long limitStatements = Long.MAX_VALUE;
 	private long totalIterations = 10;
-	private float dampingFactor = 0.85f;
+	private float dampingFactor = DAMPING_FACTOR;
 	private float epsilon = 0f;
 	private float minRank, maxRank;
 	private File dataDir = null;
+	private File scratchDir = null;
 	private int entityBitSize = 32;
+	private long memoryBudget = 0;
+	private int parallelism = 1;
+	private Kernel kernel = Kernel.PUSH;
+	private GraphStorage graphStorage = GraphStorage.AUTO;
+	private Mode mode = Mode.POWER;
+	private Extrapolation extrapolation = Extrapolation.NONE;
+	private int extrapolationPeriod = 10;
+	private boolean denseNodes = false;
+	private boolean pipelinedLoading = false;
+	private int loadingParallelism = 1;
+	private boolean distinctEdges = false;
+	private FileRankReader initialRanks = null;
+	private final RankStatistics statistics = new RankStatistics();
 	private boolean interrupt = false;
 
 	private Logger Logger = LoggerFactory.getLogger(getClass());
@@ -55,6 +170,130 @@ class RankComputer {
 		this.entityBitSize = entityBitSize;
 	}
 
+	long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Sets the memory in bytes available for the in-memory graph and rank vectors, 0 for a part of the free heap
+	 */
+	void setMemoryBudget(long bytes) {
+		memoryBudget = bytes;
+	}
+
+	int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads executing the iterations over the in-memory graph
+	 */
+	void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	Kernel getKernel() {
+		return kernel;
+	}
+
+	void setKernel(Kernel kernel) {
+		this.kernel = kernel;
+	}
+
+	GraphStorage getGraphStorage() {
+		return graphStorage;
+	}
+
+	void setGraphStorage(GraphStorage graphStorage) {
+		this.graphStorage = graphStorage;
+	}
+
+	Mode getMode() {
+		return mode;
+	}
+
+	void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	Extrapolation getExtrapolation() {
+		return extrapolation;
+	}
+
+	void setExtrapolation(Extrapolation extrapolation) {
+		this.extrapolation = extrapolation;
+	}
+
+	int getExtrapolationPeriod() {
+		return extrapolationPeriod;
+	}
+
+	/**
+	 * Sets the number of power iterations between two extrapolations
+	 */
+	void setExtrapolationPeriod(int period) {
+		extrapolationPeriod = period;
+	}
+
+	boolean isDenseNodes() {
+		return denseNodes;
+	}
+
+	/**
+	 * Sets whether the rank vectors hold only the IDs that take part in the graph, the rest of the IDs sharing
+	 * a single rank
+	 */
+	void setDenseNodes(boolean denseNodes) {
+		this.denseNodes = denseNodes;
+	}
+
+	boolean isPipelinedLoading() {
+		return pipelinedLoading;
+	}
+
+	/**
+	 * Sets whether the graph is read on a separate thread while it is being loaded, the graph reader has to be
+	 * usable from another thread
+	 */
+	void setPipelinedLoading(boolean pipelinedLoading) {
+		this.pipelinedLoading = pipelinedLoading;
+	}
+
+	int getLoadingParallelism() {
+		return loadingParallelism;
+	}
+
+	/**
+	 * Sets the number of threads that read partitions of the graph while it is being loaded, the graph reader
+	 * has to be usable from several threads at once
+	 */
+	void setLoadingParallelism(int loadingParallelism) {
+		this.loadingParallelism = loadingParallelism;
+	}
+
+	boolean isDistinctEdges() {
+		return distinctEdges;
+	}
+
+	/**
+	 * Sets whether the duplicates of an edge, e.g. from several graphs or predicates, are loaded as a single edge
+	 */
+	void setDistinctEdges(boolean distinctEdges) {
+		this.distinctEdges = distinctEdges;
+	}
+
+	/**
+	 * Sets the previously computed ranks to start the iterations from, <code>null</code> to start from the
+	 * uniform ranks
+	 */
+	void setInitialRanks(FileRankReader ranks) {
+		initialRanks = ranks;
+	}
+
+	RankStatistics getStatistics() {
+		return statistics;
+	}
+
 	private File getDataDir() {
 		return dataDir;
 	}
@@ -63,33 +302,88 @@ class RankComputer {
 		dataDir = dir;
 	}
 
-	BigFloatArray compute(GraphReader gr) {
-		// create a table storage to handle the graph data
-		long dim = gr.nodeCount() + 1;
+	/**
+	 * Sets the directory for the temporary files of the external sort, <code>null</code> for the data dir
+	 */
+	void setScratchDir(File dir) {
+		scratchDir = dir;
+	}
+
+	RankVector compute(GraphReader gr) {
 		if (getDataDir() == null) {
 			throw new IllegalArgumentException("No data dir was configured for rank computer");
 		}
-		String graphPrefix = getDataDir().getAbsolutePath() + File.separator + "graph";
-		TableStorage storage = new TableStorage(graphPrefix, dim, dim, entityBitSize);
+		long size = gr.nodeCount() + 1;
+		// the excluded IDs are not ranked and take no part in the random jumps
+		EntityBitmap excluded = gr.getExcluded();
+		long ranked = size;
+		if (excluded != null) {
+			ranked -= excluded.size() <= size ? excluded.count() : excluded.countBelow(size);
+			statistics.set("excludedIds", size - ranked);
+			if (!denseNodes) {
+				Logger.info("The excluded IDs are left out of the rank vectors, using dense nodes");
+			}
+		}
 
-		// add the whole graph into that table storage
 		Logger.info("Reading repository graph data...");
-		long count = 0;
-		for (gr.reset(); gr.next();) {
-			if (++count % 1000000 == 0) {
-				Logger.info("Adding {} of {}", count, gr.size());
-			}
-			storage.add(gr.getFrom(), gr.getTo());
-			if (interrupt) {
-				storage.shutDown();
+		NodeIndex nodes = null;
+		if (denseNodes || excluded != null) {
+			nodes = indexNodes(gr, size);
+			if (nodes == null) {
+				gr.close();
 				return null;
 			}
 		}
-		gr.close();
+		// the number of nodes in the rank vectors
+		long count = nodes != null ? nodes.count() : size;
+		// the IDs outside of the graph have no links, so they always share the same rank
+		long isolated = ranked - count;
+		statistics.set("nodes", count);
+		if (nodes != null) {
+			statistics.set("isolatedNodes", isolated);
+		}
 
-		if (count == 0) {
-			storage.shutDown();
-			throw new PluginException("Selected filter does not return any statements.");
+		// load the whole graph in memory if possible, otherwise into an edge file or a table storage
+		final NodeIndex index = nodes;
+		int nodeBitSize = getNodeBitSize(count, nodes);
+		CSRAdjacency adjacency = null;
+		TransposedAdjacency transposed = null;
+		if (graphStorage == GraphStorage.AUTO || graphStorage == GraphStorage.MEMORY) {
+			if (usesTransposed()) {
+				transposed = loadAdjacency(gr, count, index, () -> new TransposedAdjacency.Builder(count, nodeBitSize, distinctEdges));
+			} else {
+				adjacency = loadAdjacency(gr, count, index, () -> new CSRAdjacency.Builder(count, nodeBitSize, distinctEdges));
+			}
+			if (graphStorage == GraphStorage.MEMORY && adjacency == null && transposed == null && !interrupt) {
+				throw new PluginException("The graph does not fit in the available memory.");
+			}
+		}
+		TableStorage storage = null;
+		EdgeFile edgeFile = null;
+		if (adjacency == null && transposed == null && !interrupt) {
+			if (graphStorage == GraphStorage.TABLE) {
+				storage = loadTableStorage(gr, count, index);
+			} else {
+				edgeFile = loadEdgeFile(gr, count, index);
+			}
+		}
+		gr.close();
+		if (interrupt) {
+			if (storage != null) {
+				storage.shutDown();
+			}
+			if (edgeFile != null) {
+				edgeFile.close();
+			}
+			return null;
+		}
+		statistics.set("graphStorage", adjacency != null || transposed != null ? "memory"
+				: storage != null ? "table" : "stream");
+		gr.reportStatistics(statistics);
+		if (distinctEdges) {
+			reportDistinctEdges(adjacency != null ? adjacency.edgeCount()
+					: transposed != null ? transposed.inbound().edgeCount()
+					: edgeFile != null ? edgeFile.edgeCount() : countDistinctEdges(storage));
 		}
 
 		Logger.info("Finished reading repository graph data.");
@@ -97,108 +391,662 @@ class RankComputer {
 		long t1 = System.currentTimeMillis();
 		Logger.info("Computing RDF Rank of graph...");
 
-		long size = gr.nodeCount() + 1;
-
-		BigFloatArray prevRank = new BigFloatArray(size);
-		BigFloatArray currRank = new BigFloatArray(size);
+		// the Gauss-Seidel iterations need a single rank vector
+		boolean inPlace = mode == Mode.GAUSS_SEIDEL && transposed != null;
+		BigFloatArray prevRank = inPlace ? null : new BigFloatArray(count);
+		BigFloatArray currRank = new BigFloatArray(count);
+		float prevIsolated = 0, currIsolated = 1f / ranked;
 
-		float resetProbability = ((1f - dampingFactor) / size);
+		float resetProbability = ((1f - dampingFactor) / ranked);
 
-		// initialize the process with the value of 1/N
-		currRank.fill(1f / size);
+		// initialize the process with the stored ranks or with the value of 1/N
+		boolean warmStart = false;
+		if (initialRanks != null) {
+			float seeded = seed(currRank, nodes, isolated);
+			if (seeded >= 0) {
+				currIsolated = seeded;
+				warmStart = true;
+			}
+		}
+		if (!warmStart) {
+			currRank.fill(1f / ranked);
+		}
+		statistics.set("warmStart", warmStart);
 
-		// start RDF Rank iterations
-		for (int iter = 0; iter < totalIterations; iter++) {
-			minRank = 1.0f;
-			maxRank = 0;
+		ParallelPowerIteration parallel = null;
+		ResidualIteration residual = null;
+		GaussSeidelIteration gaussSeidel = null;
+		RankExtrapolator extrapolator = null;
+		try {
+			if (mode == Mode.RESIDUAL && adjacency != null) {
+				Logger.info("Pushing residuals above {} on a single thread", RankUtils.format(epsilon / ranked));
+				// the residual of a converged node is at most epsilon / N, so they add up to at most epsilon
+				residual = new ResidualIteration(adjacency, isolated, dampingFactor, resetProbability,
+						epsilon / ranked, currRank, prevRank, new BigFloatArray(count));
+				residual.start(currIsolated);
+			} else if (mode == Mode.RESIDUAL) {
+				Logger.info("The residual mode needs the in-memory graph, executing power iterations on a single thread");
+			} else if (inPlace) {
+				Logger.info("Executing Gauss-Seidel iterations on a single thread");
+				gaussSeidel = new GaussSeidelIteration(transposed, isolated, dampingFactor, resetProbability, currRank,
+						currIsolated);
+			} else if (mode == Mode.GAUSS_SEIDEL) {
+				Logger.info("The Gauss-Seidel mode needs the in-memory graph, executing power iterations on a single thread");
+			} else if (transposed != null) {
+				Logger.info("Executing iterations with the pull kernel on {} threads", parallelism);
+				parallel = ParallelPowerIteration.pull(transposed, isolated, parallelism, dampingFactor,
+						resetProbability);
+			} else if ((storage != null || edgeFile != null) && kernel == Kernel.PULL) {
+				Logger.info("The pull kernel needs the in-memory graph, executing the push kernel on a single thread");
+			} else if (parallelism > 1) {
+				if (adjacency != null) {
+					Logger.info("Executing iterations on {} threads", parallelism);
+					parallel = ParallelPowerIteration.push(adjacency, isolated, parallelism, dampingFactor,
+							resetProbability);
+				} else {
+					Logger.info("Parallel iterations need the in-memory graph, executing on a single thread");
+				}
+			}
 
-			float totalRank = 0;
-			float danglingRank = 0;
+			if (extrapolation != Extrapolation.NONE) {
+				if (residual == null && gaussSeidel == null) {
+					extrapolator = new RankExtrapolator(extrapolation, extrapolationPeriod, count, isolated);
+					extrapolator.record(0, currRank, currIsolated);
+					Logger.info("Extrapolating the ranks every {} iterations with {}", extrapolator.getPeriod(),
+							extrapolation);
+				} else {
+					Logger.info("The extrapolation applies only to the power iterations");
+				}
+			}
 
-			Logger.info("Executing iteration #{}", iter);
+			// start RDF Rank iterations
+			long iterations = 0;
+			long extrapolations = 0;
+			boolean converged = false;
+			for (int iter = 0; iter < totalIterations; iter++) {
+				Logger.info("Executing iteration #{}", iter);
+				iterations++;
 
-			// swap current and previous rank arrays
-			BigFloatArray tempRank = currRank;
-			currRank = prevRank;
-			prevRank = tempRank;
-			// clear the contents of the next-to-fill RDF Rank array
-			currRank.fill(0);
+				if (residual == null && gaussSeidel == null) {
+					// swap current and previous rank arrays
+					BigFloatArray tempRank = currRank;
+					currRank = prevRank;
+					prevRank = tempRank;
+					prevIsolated = currIsolated;
+				}
 
-			// accumulate RDF Rank for nodes
-			for (int idx = 0; idx < size; idx++) {
-				TableStorage.Iterator rowIterator = storage.rowIterator(idx);
-				long outgoing = rowIterator.size();
-				if (outgoing == 0) {
-					// nowhere to go, this means we could go anywhere
-					// rank is dispatched along the whole graph
-					danglingRank += prevRank.get(idx);
+				float delta;
+				if (residual != null) {
+					delta = residual.iterate();
+					Logger.debug("Iteration #{} pushed {} of {} nodes and {} of {} edges", iter,
+							residual.getPushedNodes(), ranked, residual.getPushedEdges(), adjacency.edgeCount());
+				} else if (gaussSeidel != null) {
+					delta = gaussSeidel.iterate();
+					currIsolated = gaussSeidel.getIsolatedRank();
+					minRank = gaussSeidel.getMinRank();
+					maxRank = gaussSeidel.getMaxRank();
+				} else if (parallel != null) {
+					delta = parallel.iterate(prevRank, currRank, prevIsolated);
+					currIsolated = parallel.getIsolatedRank();
+					minRank = parallel.getMinRank();
+					maxRank = parallel.getMaxRank();
 				} else {
-					// rank is dispatched across the outgoing links
-					float rankEmission = prevRank.get(idx) / outgoing;
-					while (rowIterator.hasNext()) {
-						long index = rowIterator.next();
-						currRank.set(index, currRank.get(index) + rankEmission);
+					minRank = 1.0f;
+					maxRank = 0;
+
+					float totalRank = 0;
+					float danglingRank;
+
+					// clear the contents of the next-to-fill RDF Rank array
+					currRank.fill(0);
+
+					// accumulate RDF Rank for nodes
+					if (adjacency != null) {
+						danglingRank = accumulate(adjacency, prevRank, currRank);
+					} else if (edgeFile != null) {
+						danglingRank = accumulate(edgeFile, prevRank, currRank);
+					} else {
+						danglingRank = accumulate(storage, prevRank, currRank);
+					}
+					if (isolated > 0) {
+						// the isolated IDs have no outgoing links either
+						danglingRank += isolated * prevIsolated;
+					}
+					// 'normalize' danglingRank rank:
+					danglingRank /= ranked;
+					// add up dangling rank, apply damping factor and add reset probability
+					for (long idx = 0; idx < count; idx++) {
+						float value = currRank.get(idx);
+						value += danglingRank;
+						value *= dampingFactor;
+						value += resetProbability;
+						currRank.set(idx, value);
+						// accumulate all ranks to get a normalizing factor
+						totalRank += value;
+					}
+					if (isolated > 0) {
+						currIsolated = danglingRank * dampingFactor + resetProbability;
+						totalRank += isolated * currIsolated;
+					}
+					// normalize rank
+					for (long idx = 0; idx < count; idx++) {
+						if (currRank.get(idx) < 0) {
+							Logger.error("Negative rank detected!");
+						}
+						float normalized = currRank.get(idx) / totalRank;
+						if (normalized < minRank) {
+							minRank = normalized;
+						}
+						if (normalized > maxRank) {
+							maxRank = normalized;
+						}
+						currRank.set(idx, normalized);
+					}
+					// compute accumulated difference with the previous rank
+					delta = 0;
+					for (long idx = 0; idx < count; idx++) {
+						if (currRank.get(idx) < 0) {
+							continue;
+						}
+						float diff = currRank.get(idx) - prevRank.get(idx);
+						if (diff < 0) {
+							delta -= diff;
+						} else {
+							delta += diff;
+						}
+					}
+					if (isolated > 0) {
+						currIsolated /= totalRank;
+						minRank = Math.min(minRank, currIsolated);
+						maxRank = Math.max(maxRank, currIsolated);
+						delta += isolated * Math.abs(currIsolated - prevIsolated);
+					}
+				}
+				Logger.debug("Iteration #{} is different by {}", iter, RankUtils.format(delta));
+
+				if (delta <= epsilon) {
+					converged = true;
+					break;
+				}
+
+				// the last iteration is not extrapolated, the result is always a power iteration
+				if (extrapolator != null && iter + 1 < totalIterations) {
+					if (extrapolator.isDue(iterations)
+							&& extrapolator.extrapolate(prevRank, currRank, prevIsolated, currIsolated)) {
+						currIsolated = extrapolator.getIsolatedRank();
+						updateMinMaxRank(currRank, isolated, currIsolated);
+						extrapolations++;
+						Logger.debug("Iteration #{} is extrapolated", iter);
 					}
+					extrapolator.record(iterations, currRank, currIsolated);
+				}
+
+				if (interrupt) {
+					return null;
 				}
 			}
-			// 'normalize' danglingRank rank:
-			danglingRank /= size;
-			// add up dangling rank, apply damping factor and add reset probability
-			for (int idx = 0; idx < size; idx++) {
-				float value = currRank.get(idx);
-				value += danglingRank;
-				value *= dampingFactor;
-				value += resetProbability;
-				currRank.set(idx, value);
-				// accumulate all ranks to get a normalizing factor
-				totalRank += value;
-			}
-			// normalize rank
-			for (int idx = 0; idx < size; idx++) {
-				if (currRank.get(idx) < 0) {
-					Logger.error("Negative rank detected!");
+			statistics.set("iterations", iterations);
+			statistics.set("converged", converged);
+			if (extrapolator != null) {
+				statistics.set("extrapolations", extrapolations);
+			}
+			if (residual != null) {
+				residual.finish();
+				currRank = residual.getRanks();
+				currIsolated = residual.getIsolatedRank();
+				updateMinMaxRank(currRank, isolated, currIsolated);
+				statistics.set("skippedNodes", residual.getSkippedNodes());
+				statistics.set("skippedEdges", residual.getSkippedEdges());
+				statistics.set("skippedEdgeRatio", RankUtils.formatWithDigits(
+						(double) residual.getSkippedEdges() / (iterations * adjacency.edgeCount()), 3));
+			}
+		} finally {
+			if (parallel != null) {
+				parallel.close();
+			}
+			// remove graph storage (won't be needed any more)
+			if (storage != null) {
+				storage.shutDown();
+			}
+			if (edgeFile != null) {
+				edgeFile.close();
+			}
+		}
+
+		long t2 = System.currentTimeMillis();
+		Logger.info("Finished computing RDF Rank in {}s.", ((t2 - t1) / 1000));
+
+		// the last computed iteration gives us result
+		return nodes != null ? RankVector.of(nodes, currRank, excluded, isolated, currIsolated) : RankVector.of(currRank);
+	}
+
+	/**
+	 * Finds the minimal and maximal rank of the nodes and the isolated IDs
+	 */
+	private void updateMinMaxRank(BigFloatArray ranks, long isolated, float isolatedRank) {
+		minRank = isolated > 0 ? isolatedRank : Float.MAX_VALUE;
+		maxRank = isolated > 0 ? isolatedRank : 0;
+		for (long idx = 0; idx < ranks.length(); idx++) {
+			minRank = Math.min(minRank, ranks.get(idx));
+			maxRank = Math.max(maxRank, ranks.get(idx));
+		}
+	}
+
+	/**
+	 * Fills the initial ranks with the stored ranks, the nodes created after the stored computation get the
+	 * uniform rank and the whole vector is normalized again
+	 *
+	 * @param ranks the rank vector to fill
+	 * @param nodes the index of the nodes in the rank vector or <code>null</code> if it holds all IDs
+	 * @param isolated the number of ranked IDs outside of the rank vector
+	 * @return the initial rank of the isolated IDs or a negative value if there are no usable stored ranks
+	 */
+	private float seed(BigFloatArray ranks, NodeIndex nodes, long isolated) {
+		long stored;
+		try {
+			stored = initialRanks.readAll(ranks, nodes);
+		} catch (IOException e) {
+			Logger.warn("Cannot read the stored ranks, starting from the uniform ranks: {}", e.getMessage());
+			return -1;
+		}
+		if (stored == 0) {
+			return -1;
+		}
+		long count = ranks.length();
+		// the number of nodes in the rank vector that got a stored rank
+		long seeded = nodes == null ? stored : stored < nodes.size() ? nodes.dense(stored) : count;
+		float uniform = 1f / (count + isolated);
+		double totalRank = isolated * (double) uniform;
+		for (long idx = 0; idx < count; idx++) {
+			float value = idx < seeded ? ranks.get(idx) : uniform;
+			if (!(value >= 0) || Float.isInfinite(value)) {
+				value = uniform;
+			}
+			ranks.set(idx, value);
+			totalRank += value;
+		}
+		if (totalRank <= 0) {
+			return -1;
+		}
+		for (long idx = 0; idx < count; idx++) {
+			ranks.set(idx, (float) (ranks.get(idx) / totalRank));
+		}
+		Logger.info("Starting from {} stored ranks, {} new nodes start from the uniform rank", seeded, count - seeded);
+		statistics.set("seededNodes", seeded);
+		return (float) (uniform / totalRank);
+	}
+
+	/**
+	 * Marks the IDs that take part in the graph on an additional pass over it
+	 *
+	 * @return the index of the IDs or <code>null</code> if the computation was interrupted
+	 */
+	private NodeIndex indexNodes(GraphReader gr, long size) {
+		NodeIndex nodes = new NodeIndex(size);
+		long count = 0;
+		try (EdgeBatchReader edges = readEdges(gr, null)) {
+			for (EdgeBatchReader.Batch batch; (batch = edges.next()) != null;) {
+				for (int idx = 0; idx < batch.size; idx++) {
+					nodes.mark(batch.from[idx]);
+					nodes.mark(batch.to[idx]);
 				}
-				float normalized = currRank.get(idx) / totalRank;
-				if (normalized < minRank) {
-					minRank = normalized;
-				} else if (normalized > maxRank) {
-					maxRank = normalized;
+				logProgress("Indexing", count, count += batch.size, gr.size());
+				if (interrupt) {
+					return null;
 				}
-				currRank.set(idx, normalized);
 			}
-			// compute accumulated difference with the previous rank
-			float delta = 0;
-			for (int idx = 0; idx < size; idx++) {
-				if (currRank.get(idx) < 0) {
-					continue;
+		}
+		if (count == 0) {
+			throw new PluginException("Selected filter does not return any statements.");
+		}
+		nodes.seal();
+		Logger.info("{} of {} entity IDs take part in the graph", nodes.count(), size);
+		return nodes;
+	}
+
+	/**
+	 * Starts a pass over the graph, on a separate reader thread if the loading is pipelined or on a thread for
+	 * each partition of the graph if the loading is parallel
+	 *
+	 * @param nodes the index of the nodes or <code>null</code> if all IDs are nodes
+	 */
+	private EdgeBatchReader readEdges(GraphReader gr, NodeIndex nodes) {
+		if (loadingParallelism > 1) {
+			List<GraphReader> partitions = gr.partition(loadingParallelism);
+			if (partitions.size() > 1) {
+				return EdgeBatchReader.parallel(partitions, nodes, PIPELINE_DEPTH);
+			}
+		}
+		return pipelinedLoading
+				? EdgeBatchReader.pipelined(gr, nodes, PIPELINE_DEPTH)
+				: EdgeBatchReader.sequential(gr, nodes);
+	}
+
+	/**
+	 * Logs the progress of a pass over the graph on every million edges
+	 */
+	private void logProgress(String action, long previous, long count, long total) {
+		if (previous / 1000000 != count / 1000000) {
+			Logger.info("{} {} of {}", action, count, total);
+		}
+	}
+
+	/**
+	 * Loads the graph into an in-memory adjacency - the edges are counted on a first pass over the graph and
+	 * filled on a second one.
+	 *
+	 * @param size the number of nodes in the adjacency
+	 * @param nodes the index of the nodes or <code>null</code> if all IDs are nodes
+	 * @return the adjacency or <code>null</code> if it does not fit in the memory budget or the computation
+	 *         was interrupted
+	 */
+	private <T> T loadAdjacency(GraphReader gr, long size, NodeIndex nodes, Supplier<AdjacencyBuilder<T>> builders) {
+		long available = getAvailableMemory() - getRankVectorCount(true) * size * Float.BYTES;
+		if (nodes != null) {
+			available -= NodeIndex.estimateMemory(nodes.size());
+		}
+
+		gr.reset();
+		int nodeBitSize = getNodeBitSize(size, nodes);
+		long estimated = usesTransposed()
+				? TransposedAdjacency.estimateMemory(size, gr.size(), nodeBitSize)
+				: CSRAdjacency.estimateMemory(size, gr.size(), nodeBitSize);
+		if (estimated > available) {
+			Logger.info("In-memory graph needs about {}MB, only {}MB available. Using disk storage.",
+					estimated >> 20, available >> 20);
+			return null;
+		}
+
+		AdjacencyBuilder<T> builder = builders.get();
+		long count = 0;
+		try (EdgeBatchReader edges = readEdges(gr, nodes)) {
+			for (EdgeBatchReader.Batch batch; (batch = edges.next()) != null;) {
+				for (int idx = 0; idx < batch.size; idx++) {
+					builder.count(batch.from[idx], batch.to[idx]);
 				}
-				float diff = currRank.get(idx) - prevRank.get(idx);
-				if (diff < 0) {
-					delta -= diff;
-				} else {
-					delta += diff;
+				logProgress("Counting", count, count += batch.size, gr.size());
+				if (interrupt) {
+					return null;
 				}
 			}
-			Logger.debug("Iteration #{} is different by {}", iter, RankUtils.format(delta));
+		}
+		if (builder.edgeCount() == 0) {
+			throw new PluginException("Selected filter does not return any statements.");
+		}
+		statistics.set("edges", builder.edgeCount());
 
-			if (delta <= epsilon) {
-				break;
+		long needed = builder.estimateMemory();
+		if (needed > available) {
+			Logger.info("In-memory graph needs {}MB, only {}MB available. Using disk storage.",
+					needed >> 20, available >> 20);
+			return null;
+		}
+
+		builder.startFill();
+		count = 0;
+		try (EdgeBatchReader edges = readEdges(gr, nodes)) {
+			for (EdgeBatchReader.Batch batch; (batch = edges.next()) != null;) {
+				for (int idx = 0; idx < batch.size; idx++) {
+					builder.fill(batch.from[idx], batch.to[idx]);
+				}
+				logProgress("Adding", count, count += batch.size, builder.edgeCount());
+				if (interrupt) {
+					return null;
+				}
 			}
+		}
+		return builder.build();
+	}
 
-			if (interrupt) {
-				storage.shutDown();
-				return null;
+	/**
+	 * Gets the number of bits needed to store a node, the dense nodes may need less bits than the entity IDs
+	 */
+	private int getNodeBitSize(long size, NodeIndex nodes) {
+		return nodes == null ? entityBitSize : Math.min(entityBitSize, 64 - Long.numberOfLeadingZeros(size));
+	}
+
+	/**
+	 * Gets the number of node-sized float vectors needed by the iterations
+	 *
+	 * @param inMemory whether the graph is in memory, the other storages fall back to power iterations on a
+	 *                 single thread
+	 */
+	private int getRankVectorCount(boolean inMemory) {
+		if (inMemory && mode == Mode.RESIDUAL) {
+			// the ranks and the residuals of the current and the next iteration
+			return 3;
+		}
+		if (inMemory && mode == Mode.GAUSS_SEIDEL) {
+			return 1;
+		}
+		// the parallel push kernel accumulates the ranks in an additional vector
+		int count = inMemory && kernel == Kernel.PUSH && parallelism > 1 ? 3 : 2;
+		// the previous iterates kept by the extrapolation of the power iterations
+		return count + extrapolation.history();
+	}
+
+	/**
+	 * Checks whether the iterations work over the transposed graph
+	 */
+	private boolean usesTransposed() {
+		// the residuals are pushed along the outgoing links
+		return mode == Mode.POWER && kernel == Kernel.PULL || mode == Mode.GAUSS_SEIDEL;
+	}
+
+	/**
+	 * Loads the graph into a disk-based {@link TableStorage}
+	 *
+	 * @return the storage or <code>null</code> if the computation was interrupted
+	 */
+	private TableStorage loadTableStorage(GraphReader gr, long size, NodeIndex nodes) {
+		String graphPrefix = getDataDir().getAbsolutePath() + File.separator + "graph";
+		TableStorage storage = new TableStorage(graphPrefix, size, size, getNodeBitSize(size, nodes));
+
+		long count = 0;
+		try (EdgeBatchReader edges = readEdges(gr, nodes)) {
+			for (EdgeBatchReader.Batch batch; (batch = edges.next()) != null;) {
+				for (int idx = 0; idx < batch.size; idx++) {
+					storage.add(batch.from[idx], batch.to[idx]);
+				}
+				logProgress("Adding", count, count += batch.size, gr.size());
+				if (interrupt) {
+					storage.shutDown();
+					return null;
+				}
 			}
 		}
 
-		long t2 = System.currentTimeMillis();
-		Logger.info("Finished computing RDF Rank in {}s.", ((t2 - t1) / 1000));
+		if (count == 0) {
+			storage.shutDown();
+			throw new PluginException("Selected filter does not return any statements.");
+		}
+		statistics.set("edges", count);
+		return storage;
+	}
 
-		// remove graph storage (won't be needed any more)
-		storage.shutDown();
+	/**
+	 * Writes the graph into an {@link EdgeFile} sorted by source on a single pass over it, with an external
+	 * sort in the scratch directory if the edges do not fit in the memory
+	 *
+	 * @return the edge file or <code>null</code> if the computation was interrupted
+	 */
+	private EdgeFile loadEdgeFile(GraphReader gr, long size, NodeIndex nodes) {
+		long available = getAvailableMemory() - getRankVectorCount(false) * size * Float.BYTES;
+		if (nodes != null) {
+			available -= NodeIndex.estimateMemory(nodes.size());
+		}
+		File scratch = scratchDir != null ? scratchDir : getDataDir();
+		try (EdgeSorter sorter = new EdgeSorter(scratch, size, getNodeBitSize(size, nodes), available,
+				distinctEdges)) {
+			long count = 0;
+			try (EdgeBatchReader edges = readEdges(gr, nodes)) {
+				for (EdgeBatchReader.Batch batch; (batch = edges.next()) != null;) {
+					for (int idx = 0; idx < batch.size; idx++) {
+						sorter.add(batch.from[idx], batch.to[idx]);
+					}
+					logProgress("Sorting", count, count += batch.size, gr.size());
+					if (interrupt) {
+						return null;
+					}
+				}
+			}
+			if (sorter.edgeCount() == 0) {
+				throw new PluginException("Selected filter does not return any statements.");
+			}
+			statistics.set("edges", sorter.edgeCount());
 
-		// the last computed iteration gives us result
-		return currRank;
+			File file = new File(getDataDir(), "graph.edges");
+			EdgeFile edgeFile = sorter.finish(file);
+			statistics.set("sortRuns", sorter.getRunCount());
+			statistics.set("sortMerges", sorter.getMergeCount());
+			Logger.info("Wrote {} edges to {} ({}MB) from {} sorted runs in {} merges", edgeFile.edgeCount(), file,
+					edgeFile.length() >> 20, sorter.getRunCount(), sorter.getMergeCount());
+			return edgeFile;
+		}
+	}
+
+	/**
+	 * Counts the edges of the table storage without the duplicates
+	 */
+	private static long countDistinctEdges(TableStorage storage) {
+		long[] count = new long[1];
+		storage.forEachRow((row, values, size) -> count[0] += RankUtils.distinct(values, size));
+		return count[0];
+	}
+
+	private void reportDistinctEdges(long distinct) {
+		long edges = statistics.getLong("edges");
+		statistics.set("distinctEdges", distinct);
+		Logger.info("{} of {} edges are distinct, removed {}% duplicates", distinct, edges,
+				RankUtils.formatWithDigits(edges > 0 ? 100.0 * (edges - distinct) / edges : 0, 1));
+	}
+
+	/**
+	 * Gets the memory in bytes that the computation may use - either the configured memory budget or a part
+	 * of the currently free heap
+	 */
+	private long getAvailableMemory() {
+		if (memoryBudget > 0) {
+			return memoryBudget;
+		}
+		Runtime runtime = Runtime.getRuntime();
+		long used = runtime.totalMemory() - runtime.freeMemory();
+		return (long) ((runtime.maxMemory() - used) * AUTO_MEMORY_FRACTION);
+	}
+
+	/**
+	 * Dispatches the rank of every node across its outgoing links, streaming the in-memory adjacency
+	 *
+	 * @return the rank of the nodes without outgoing links
+	 */
+	private float accumulate(CSRAdjacency adjacency, BigFloatArray prevRank, BigFloatArray currRank) {
+		float danglingRank = 0;
+		long size = adjacency.nodeCount();
+		long begin = adjacency.begin(0);
+		for (long idx = 0; idx < size; idx++) {
+			long end = adjacency.end(idx);
+			if (begin == end) {
+				// nowhere to go, this means we could go anywhere
+				// rank is dispatched along the whole graph
+				danglingRank += prevRank.get(idx);
+			} else {
+				// rank is dispatched across the outgoing links
+				float rankEmission = prevRank.get(idx) / (end - begin);
+				for (long edge = begin; edge < end; edge++) {
+					long index = adjacency.target(edge);
+					currRank.set(index, currRank.get(index) + rankEmission);
+				}
+			}
+			begin = end;
+		}
+		return danglingRank;
+	}
+
+	/**
+	 * Dispatches the rank of every node across its outgoing links, visiting the rows of the table storage
+	 *
+	 * @return the rank of the nodes without outgoing links
+	 */
+	private float accumulate(TableStorage storage, BigFloatArray prevRank, BigFloatArray currRank) {
+		TableAccumulator accumulator = new TableAccumulator(prevRank, currRank, distinctEdges);
+		storage.forEachRow(accumulator);
+		return accumulator.finish();
+	}
+
+	/**
+	 * Dispatches the ranks row by row, the nodes between two visited rows have no outgoing links
+	 */
+	private static class TableAccumulator implements TableStorage.RowVisitor {
+		private final BigFloatArray prevRank;
+		private final BigFloatArray currRank;
+		private final boolean distinct;
+		private float danglingRank;
+		private long next;
+
+		TableAccumulator(BigFloatArray prevRank, BigFloatArray currRank, boolean distinct) {
+			this.prevRank = prevRank;
+			this.currRank = currRank;
+			this.distinct = distinct;
+		}
+
+		@Override
+		public void visit(long row, long[] values, int size) {
+			if (distinct) {
+				size = RankUtils.distinct(values, size);
+			}
+			for (; next < row; next++) {
+				// nowhere to go, this means we could go anywhere
+				// rank is dispatched along the whole graph
+				danglingRank += prevRank.get(next);
+			}
+			next = row + 1;
+			// rank is dispatched across the outgoing links
+			float rankEmission = prevRank.get(row) / size;
+			for (int idx = 0; idx < size; idx++) {
+				long index = values[idx];
+				currRank.set(index, currRank.get(index) + rankEmission);
+			}
+		}
+
+		/**
+		 * Adds up the rank of the nodes after the last row
+		 *
+		 * @return the rank of the nodes without outgoing links
+		 */
+		float finish() {
+			for (; next < prevRank.length(); next++) {
+				danglingRank += prevRank.get(next);
+			}
+			return danglingRank;
+		}
+	}
+
+	/**
+	 * Dispatches the rank of every node across its outgoing links, streaming the edge file
+	 *
+	 * @return the rank of the nodes without outgoing links
+	 */
+	private float accumulate(EdgeFile edgeFile, BigFloatArray prevRank, BigFloatArray currRank) {
+		float danglingRank = 0;
+		long size = prevRank.length();
+		// the nodes between two records have no outgoing links
+		long idx = 0;
+		EdgeFile.Scanner scanner = edgeFile.scan();
+		while (scanner.nextSource()) {
+			for (long source = scanner.source(); idx < source; idx++) {
+				danglingRank += prevRank.get(idx);
+			}
+			// rank is dispatched across the outgoing links
+			float rankEmission = prevRank.get(idx++) / scanner.degree();
+			for (long edge = scanner.degree(); edge > 0; edge--) {
+				long index = scanner.nextTarget();
+				currRank.set(index, currRank.get(index) + rankEmission);
+			}
+		}
+		for (; idx < size; idx++) {
+			danglingRank += prevRank.get(idx);
+		}
+		return danglingRank;
 	}
 
 	void interrupt() {
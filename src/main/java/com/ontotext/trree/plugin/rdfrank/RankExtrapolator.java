@@ -0,0 +1,219 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.util.BigFloatArray;
+
+/**
+ * Accelerates the power iterations by periodically replacing the current ranks with an extrapolation of the
+ * last few iterates towards the fixed point, as in the Aitken and the quadratic extrapolation of Kamvar et al.
+ * The iterates older than the previous one are copied into vectors of its own, so an extrapolation costs
+ * {@link RankComputer.Extrapolation#history()} additional rank vectors.
+ * <p>
+ * A value that cannot be extrapolated, e.g. because it would become negative, keeps the rank of the power
+ * iteration. The IDs outside of the graph share a single rank, which is extrapolated as one more value that
+ * weighs as much as the number of these IDs.
+ */
+class RankExtrapolator {
+	private final RankComputer.Extrapolation extrapolation;
+	private final int period;
+	private final long isolated;
+	// the iterates older than the previous one, the oldest first
+	private final BigFloatArray[] history;
+	private final float[] historyIsolated;
+	private final long[] historyStep;
+
+	private float isolatedRank;
+
+	/**
+	 * @param period the number of power iterations between two extrapolations
+	 * @param count the number of nodes in the rank vectors
+	 * @param isolated the number of ranked IDs outside of the rank vectors
+	 */
+	RankExtrapolator(RankComputer.Extrapolation extrapolation, int period, long count, long isolated) {
+		this.extrapolation = extrapolation;
+		// the oldest iterate may be the last extrapolated one, but not an older one
+		this.period = Math.max(period, extrapolation.history() + 1);
+		this.isolated = isolated;
+		history = new BigFloatArray[extrapolation.history()];
+		historyIsolated = new float[history.length];
+		historyStep = new long[history.length];
+		for (int i = 0; i < history.length; i++) {
+			history[i] = new BigFloatArray(count);
+			historyStep[i] = -1;
+		}
+	}
+
+	int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Keeps a copy of the ranks after the given number of power iterations if a later extrapolation needs them
+	 *
+	 * @param step the number of power iterations so far, 0 for the initial ranks
+	 */
+	void record(long step, BigFloatArray ranks, float isolatedRank) {
+		for (int i = 0; i < history.length; i++) {
+			// the i-th vector holds the iterate that is history.length - i + 1 steps behind the extrapolation
+			if ((step + history.length - i + 1) % period == 0) {
+				for (long idx = 0; idx < ranks.length(); idx++) {
+					history[i].set(idx, ranks.get(idx));
+				}
+				historyIsolated[i] = isolatedRank;
+				historyStep[i] = step;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the ranks are to be extrapolated after the given number of power iterations
+	 */
+	boolean isDue(long step) {
+		if (step % period != 0) {
+			return false;
+		}
+		for (int i = 0; i < history.length; i++) {
+			if (historyStep[i] != step - history.length + i - 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Extrapolates the ranks of the last two power iterations and the recorded older ones. The current ranks
+	 * are replaced with the normalized result.
+	 *
+	 * @return <code>true</code> if the ranks were extrapolated
+	 */
+	boolean extrapolate(BigFloatArray prevRank, BigFloatArray currRank, float prevIsolated, float currIsolated) {
+		isolatedRank = currIsolated;
+		switch (extrapolation) {
+		case AITKEN:
+			return aitken(prevRank, currRank, prevIsolated, currIsolated);
+		case QUADRATIC:
+			return quadratic(prevRank, currRank, prevIsolated, currIsolated);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the extrapolated rank of the IDs outside of the rank vectors
+	 */
+	float getIsolatedRank() {
+		return isolatedRank;
+	}
+
+	/**
+	 * Applies the vector form of the Aitken delta-squared process - the last three iterates are assumed to be
+	 * the fixed point plus a geometrically decreasing error, whose ratio is found with the least squares. The
+	 * component-wise form is not used as it is unstable for the values that change little.
+	 */
+	private boolean aitken(BigFloatArray prevRank, BigFloatArray currRank, float prevIsolated, float currIsolated) {
+		BigFloatArray x0 = history[0];
+		// the products of the last difference and the second difference
+		double product = 0, square = 0;
+		for (long idx = 0; idx <= currRank.length(); idx++) {
+			double weight, difference, secondDifference;
+			if (idx < currRank.length()) {
+				weight = 1;
+				difference = currRank.get(idx) - prevRank.get(idx);
+				secondDifference = difference - (prevRank.get(idx) - x0.get(idx));
+			} else {
+				weight = isolated;
+				difference = currIsolated - prevIsolated;
+				secondDifference = difference - (prevIsolated - historyIsolated[0]);
+			}
+			product += weight * difference * secondDifference;
+			square += weight * secondDifference * secondDifference;
+		}
+		if (!(square > 0)) {
+			return false;
+		}
+		double step = product / square;
+
+		double totalRank = 0;
+		for (long idx = 0; idx < currRank.length(); idx++) {
+			float value = shift(currRank.get(idx), prevRank.get(idx), step);
+			currRank.set(idx, value);
+			totalRank += value;
+		}
+		if (isolated > 0) {
+			isolatedRank = shift(currIsolated, prevIsolated, step);
+			totalRank += isolated * (double) isolatedRank;
+		}
+		normalize(currRank, totalRank);
+		return true;
+	}
+
+	private static float shift(float x1, float x0, double step) {
+		double value = x1 - step * (x1 - x0);
+		return value > 0 ? (float) value : x1;
+	}
+
+	/**
+	 * Applies the quadratic extrapolation - the last four iterates are assumed to be a combination of the
+	 * three main eigenvectors, whose coefficients are found with the least squares
+	 */
+	private boolean quadratic(BigFloatArray prevRank, BigFloatArray currRank, float prevIsolated, float currIsolated) {
+		BigFloatArray x0 = history[0];
+		BigFloatArray x1 = history[1];
+		// the Gram matrix of y1 = x1 - x0 and y2 = x2 - x0, and their products with y3 = x3 - x0
+		double a11 = 0, a12 = 0, a22 = 0, b1 = 0, b2 = 0;
+		for (long idx = 0; idx <= currRank.length(); idx++) {
+			double weight, y1, y2, y3;
+			if (idx < currRank.length()) {
+				float base = x0.get(idx);
+				weight = 1;
+				y1 = x1.get(idx) - base;
+				y2 = prevRank.get(idx) - base;
+				y3 = currRank.get(idx) - base;
+			} else {
+				float base = historyIsolated[0];
+				weight = isolated;
+				y1 = historyIsolated[1] - base;
+				y2 = prevIsolated - base;
+				y3 = currIsolated - base;
+			}
+			a11 += weight * y1 * y1;
+			a12 += weight * y1 * y2;
+			a22 += weight * y2 * y2;
+			b1 -= weight * y1 * y3;
+			b2 -= weight * y2 * y3;
+		}
+		double determinant = a11 * a22 - a12 * a12;
+		if (!(Math.abs(determinant) > 1e-12 * a11 * a22)) {
+			// the iterates are too close to each other
+			return false;
+		}
+		double gamma1 = (b1 * a22 - b2 * a12) / determinant;
+		double gamma2 = (a11 * b2 - a12 * b1) / determinant;
+		double beta0 = gamma1 + gamma2 + 1;
+		double beta1 = gamma2 + 1;
+
+		double totalRank = 0;
+		for (long idx = 0; idx < currRank.length(); idx++) {
+			float value = combine(beta0, beta1, x1.get(idx), prevRank.get(idx), currRank.get(idx));
+			currRank.set(idx, value);
+			totalRank += value;
+		}
+		if (isolated > 0) {
+			isolatedRank = combine(beta0, beta1, historyIsolated[1], prevIsolated, currIsolated);
+			totalRank += isolated * (double) isolatedRank;
+		}
+		normalize(currRank, totalRank);
+		return true;
+	}
+
+	private static float combine(double beta0, double beta1, float x1, float x2, float x3) {
+		double value = beta0 * x1 + beta1 * x2 + x3;
+		return value > 0 ? (float) value : x3;
+	}
+
+	private void normalize(BigFloatArray ranks, double totalRank) {
+		for (long idx = 0; idx < ranks.length(); idx++) {
+			ranks.set(idx, (float) (ranks.get(idx) / totalRank));
+		}
+		isolatedRank = (float) (isolatedRank / totalRank);
+	}
+}
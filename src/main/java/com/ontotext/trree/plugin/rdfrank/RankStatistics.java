@@ -0,0 +1,33 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Named figures describing the last rank computation, kept in the order in which they were recorded. They are
+ * reported in the logs and through the <code>rdfrank:statistics</code> predicate.
+ */
+class RankStatistics {
+	private final Map<String, Object> values = new LinkedHashMap<>();
+
+	synchronized void set(String name, Object value) {
+		values.put(name, value);
+	}
+
+	synchronized Object get(String name) {
+		return values.get(name);
+	}
+
+	synchronized long getLong(String name) {
+		Object value = values.get(name);
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return values.entrySet().stream()
+				.map(entry -> entry.getKey() + "=" + entry.getValue())
+				.collect(Collectors.joining(", "));
+	}
+}
@@ -1,6 +1,7 @@
 package com.ontotext.trree.plugin.rdfrank;
 
 import com.ontotext.trree.util.BigFloatArray;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Locale;
 
@@ -52,12 +53,11 @@ class RankUtils {
 	 *            the minimum factor between thresholds
 	 * @return array of thresholds
 	 */
-	static double[] computeThresholds(BigFloatArray ranks, int precision) {
+	static double[] computeThresholds(RankVector ranks, int precision) {
 		// create a sorted copy of the ranks array
-		BigFloatArray sorted = ranks.clone();
-		sorted.sort();
+		BigFloatArray sorted = ranks.sorted();
 
-		int idx = 0;
+		long idx = 0;
 		double cur, min, max;
 
 		// find the beginning of the non-negative ranks
@@ -91,10 +91,10 @@ class RankUtils {
 		thresholds.add(min);
 		thresholds.add(max);
 
-		idx = 0;
+		int index = 0;
 		double[] thresholdsArray = new double[thresholds.size()];
 		for (Double t : thresholds) {
-			thresholdsArray[idx++] = t;
+			thresholdsArray[index++] = t;
 		}
 
 		return thresholdsArray;
@@ -113,4 +113,79 @@ class RankUtils {
 	static String formatWithDigits(double number, int digits) {
 		return String.format(FORMAT_LOCALE, "%.0" + digits + "f", number);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Sorts the first values of an array and removes the duplicates among them
+	 * 
+	 * @param values the array holding the values in its first <code>size</code> elements
+	 * @return the number of distinct values, which are now at the beginning of the array
+	 */
+	static int distinct(long[] values, int size) {
+		if (size < 2) {
+			return size;
+		}
+		Arrays.sort(values, 0, size);
+		int count = 1;
+		for (int idx = 1; idx < size; idx++) {
+			if (values[idx] != values[count - 1]) {
+				values[count++] = values[idx];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Sorts the first keys of an array together with the values at the same positions of another array
+	 *
+	 * @param size the number of keys and values to sort
+	 */
+	static void sort(long[] keys, long[] values, int size) {
+		sort(keys, values, 0, size - 1);
+	}
+
+	private static void sort(long[] keys, long[] values, int low, int high) {
+		while (low < high) {
+			if (high - low < 16) {
+				// insertion sort for the short ranges
+				for (int idx = low + 1; idx <= high; idx++) {
+					long key = keys[idx], value = values[idx];
+					int pos = idx - 1;
+					for (; pos >= low && keys[pos] > key; pos--) {
+						keys[pos + 1] = keys[pos];
+						values[pos + 1] = values[pos];
+					}
+					keys[pos + 1] = key;
+					values[pos + 1] = value;
+				}
+				return;
+			}
+			long pivot = keys[(low + high) >>> 1];
+			int left = low, right = high;
+			while (left <= right) {
+				while (keys[left] < pivot) {
+					left++;
+				}
+				while (keys[right] > pivot) {
+					right--;
+				}
+				if (left <= right) {
+					long key = keys[left], value = values[left];
+					keys[left] = keys[right];
+					values[left] = values[right];
+					keys[right] = key;
+					values[right] = value;
+					left++;
+					right--;
+				}
+			}
+			// recurse into the smaller part, so that the stack stays logarithmic
+			if (right - low < high - left) {
+				sort(keys, values, low, right);
+				low = left;
+			} else {
+				sort(keys, values, left, high);
+				high = right;
+			}
+		}
+	}
+}
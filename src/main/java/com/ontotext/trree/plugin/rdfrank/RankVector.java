@@ -0,0 +1,106 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.util.BigFloatArray;
+
+/**
+ * The computed ranks of all entity IDs. The ranks are either kept for every ID or only for the IDs in a
+ * {@link NodeIndex}, the rest of the IDs having a single common rank, except for the excluded IDs which
+ * have no rank.
+ */
+abstract class RankVector {
+	/**
+	 * Gets the number of entity IDs, including the unused ID 0
+	 */
+	abstract long length();
+
+	abstract float get(long id);
+
+	/**
+	 * Gets the rank values in ascending order. The repetitions of a value may be collapsed, which does not
+	 * change the thresholds computed from them.
+	 */
+	abstract BigFloatArray sorted();
+
+	static RankVector of(BigFloatArray ranks) {
+		return new FullRankVector(ranks);
+	}
+
+	/**
+	 * Creates a vector of the ranks of the IDs in an index
+	 *
+	 * @param excluded the IDs without rank or <code>null</code>
+	 * @param isolated the number of ranked IDs outside of the index
+	 * @param isolatedRank the rank of each ranked ID outside of the index
+	 */
+	static RankVector of(NodeIndex nodes, BigFloatArray ranks, EntityBitmap excluded, long isolated,
+			float isolatedRank) {
+		return new DenseRankVector(nodes, ranks, excluded, isolated, isolatedRank);
+	}
+
+	private static class FullRankVector extends RankVector {
+		private final BigFloatArray ranks;
+
+		FullRankVector(BigFloatArray ranks) {
+			this.ranks = ranks;
+		}
+
+		@Override
+		long length() {
+			return ranks.length();
+		}
+
+		@Override
+		float get(long id) {
+			return ranks.get(id);
+		}
+
+		@Override
+		BigFloatArray sorted() {
+			BigFloatArray sorted = ranks.clone();
+			sorted.sort();
+			return sorted;
+		}
+	}
+
+	private static class DenseRankVector extends RankVector {
+		private final NodeIndex nodes;
+		private final BigFloatArray ranks;
+		private final EntityBitmap excluded;
+		private final float isolatedRank;
+
+		DenseRankVector(NodeIndex nodes, BigFloatArray ranks, EntityBitmap excluded, long isolated,
+				float isolatedRank) {
+			this.nodes = nodes;
+			this.ranks = ranks;
+			this.excluded = excluded;
+			// the isolated IDs get no rank if all of them are excluded
+			this.isolatedRank = isolated > 0 ? isolatedRank : 0;
+		}
+
+		@Override
+		long length() {
+			return nodes.size();
+		}
+
+		@Override
+		float get(long id) {
+			return nodes.contains(id) ? ranks.get(nodes.dense(id)) : excluded != null && excluded.get(id) ? 0 : isolatedRank;
+		}
+
+		@Override
+		BigFloatArray sorted() {
+			// the rank of all isolated IDs is added only once
+			long count = ranks.length();
+			boolean hasIsolated = isolatedRank > 0;
+			BigFloatArray sorted = new BigFloatArray(hasIsolated ? count + 1 : count);
+			for (long idx = 0; idx < count; idx++) {
+				sorted.set(idx, ranks.get(idx));
+			}
+			if (hasIsolated) {
+				sorted.set(count, isolatedRank);
+			}
+			sorted.sort();
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.util.BigFloatArray;
+
+/**
+ * Computes the ranks by pushing residuals along the links of an in-memory graph, in the style of the
+ * Gauss-Southwell and delta PageRank methods. Every node keeps the rank it has collected so far and a residual
+ * that is yet to be added to it and dispatched to its out-neighbours. On each iteration only the nodes whose
+ * residual exceeds a threshold are pushed, so the nodes that have converged cost a single check and their
+ * links are skipped.
+ * <p>
+ * The residuals pushed on an iteration are collected in a second array and pushed on the next one, so that
+ * the positive and negative residuals reaching a node cancel out before it is pushed. Without a threshold an
+ * iteration is the same as a power iteration.
+ * <p>
+ * The residual of a node without outgoing links goes to all nodes. It is collected in a single uniform
+ * residual that is added to every node on the next iteration. The IDs outside of the graph share a single rank
+ * and residual.
+ */
+class ResidualIteration {
+	private final CSRAdjacency adjacency;
+	private final long nodes;
+	private final long isolated;
+	// the number of all ranked IDs
+	private final long ranked;
+	private final float dampingFactor;
+	private final float resetProbability;
+	private final float threshold;
+
+	private final BigFloatArray ranks;
+	private BigFloatArray residuals;
+	// collects the residuals for the next iteration, all zeros between the iterations
+	private BigFloatArray nextResiduals;
+	private float isolatedRank, isolatedResidual;
+	// the residual of every node coming from the nodes without outgoing links
+	private float uniformResidual;
+
+	private long pushedNodes, pushedEdges;
+	private long skippedNodes, skippedEdges;
+
+	/**
+	 * @param isolated the number of ranked IDs outside of the graph
+	 * @param threshold the residual up to which a node is not pushed
+	 * @param ranks the array to hold the ranks
+	 * @param residuals the array to hold the residuals
+	 * @param nextResiduals a zero-filled array to collect the residuals of the next iteration
+	 */
+	ResidualIteration(CSRAdjacency adjacency, long isolated, float dampingFactor, float resetProbability,
+			float threshold, BigFloatArray ranks, BigFloatArray residuals, BigFloatArray nextResiduals) {
+		this.adjacency = adjacency;
+		this.isolated = isolated;
+		this.dampingFactor = dampingFactor;
+		this.resetProbability = resetProbability;
+		this.threshold = threshold;
+		this.ranks = ranks;
+		this.residuals = residuals;
+		this.nextResiduals = nextResiduals;
+		nodes = adjacency.nodeCount();
+		ranked = nodes + isolated;
+	}
+
+	/**
+	 * Starts from the ranks already in the ranks array, either the uniform or the stored ones. The residuals
+	 * are the difference between one power iteration over the ranks and the ranks themselves.
+	 *
+	 * @param initialIsolatedRank the initial rank of the IDs outside of the graph
+	 */
+	void start(float initialIsolatedRank) {
+		isolatedRank = initialIsolatedRank;
+		uniformResidual = 0;
+		residuals.fill(0);
+		float danglingRank = isolated * isolatedRank;
+		long begin = adjacency.begin(0);
+		for (long idx = 0; idx < nodes; idx++) {
+			long end = adjacency.end(idx);
+			if (begin == end) {
+				danglingRank += ranks.get(idx);
+			} else {
+				float rankEmission = ranks.get(idx) / (end - begin);
+				for (long edge = begin; edge < end; edge++) {
+					long index = adjacency.target(edge);
+					residuals.set(index, residuals.get(index) + rankEmission);
+				}
+			}
+			begin = end;
+		}
+		danglingRank /= ranked;
+		for (long idx = 0; idx < nodes; idx++) {
+			float value = (residuals.get(idx) + danglingRank) * dampingFactor + resetProbability;
+			residuals.set(idx, value - ranks.get(idx));
+		}
+		isolatedResidual = danglingRank * dampingFactor + resetProbability - isolatedRank;
+	}
+
+	/**
+	 * Pushes the residuals of the nodes above the threshold
+	 *
+	 * @return the total pushed residual, i.e. the change of the ranks
+	 */
+	float iterate() {
+		float uniform = uniformResidual;
+		uniformResidual = 0;
+		float pushed = 0;
+		pushedNodes = 0;
+		pushedEdges = 0;
+
+		long begin = adjacency.begin(0);
+		for (long idx = 0; idx < nodes; idx++) {
+			long end = adjacency.end(idx);
+			float residual = residuals.get(idx) + uniform;
+			residuals.set(idx, 0);
+			if (Math.abs(residual) > threshold) {
+				ranks.set(idx, ranks.get(idx) + residual);
+				pushed += Math.abs(residual);
+				pushedNodes++;
+				if (begin == end) {
+					// nowhere to go, the residual is dispatched along the whole graph
+					uniformResidual += residual;
+				} else {
+					float emission = residual * dampingFactor / (end - begin);
+					for (long edge = begin; edge < end; edge++) {
+						long index = adjacency.target(edge);
+						nextResiduals.set(index, nextResiduals.get(index) + emission);
+					}
+					pushedEdges += end - begin;
+				}
+			} else {
+				// kept for the next iteration
+				nextResiduals.set(idx, nextResiduals.get(idx) + residual);
+			}
+			begin = end;
+		}
+		// the residuals are all zeros now
+		BigFloatArray temp = residuals;
+		residuals = nextResiduals;
+		nextResiduals = temp;
+		if (isolated > 0) {
+			float residual = isolatedResidual + uniform;
+			if (Math.abs(residual) > threshold) {
+				isolatedRank += residual;
+				isolatedResidual = 0;
+				pushed += isolated * Math.abs(residual);
+				pushedNodes += isolated;
+				uniformResidual += isolated * residual;
+			} else {
+				isolatedResidual = residual;
+			}
+		}
+		uniformResidual = uniformResidual * dampingFactor / ranked;
+
+		skippedNodes += ranked - pushedNodes;
+		skippedEdges += adjacency.edgeCount() - pushedEdges;
+		return pushed;
+	}
+
+	/**
+	 * Normalizes the ranks, leaving out the residuals below the threshold
+	 */
+	void finish() {
+		double totalRank = isolated * (double) isolatedRank;
+		for (long idx = 0; idx < nodes; idx++) {
+			totalRank += ranks.get(idx);
+		}
+		for (long idx = 0; idx < nodes; idx++) {
+			ranks.set(idx, (float) (ranks.get(idx) / totalRank));
+		}
+		isolatedRank = (float) (isolatedRank / totalRank);
+	}
+
+	BigFloatArray getRanks() {
+		return ranks;
+	}
+
+	float getIsolatedRank() {
+		return isolatedRank;
+	}
+
+	/**
+	 * Gets the number of nodes pushed on the last iteration
+	 */
+	long getPushedNodes() {
+		return pushedNodes;
+	}
+
+	/**
+	 * Gets the number of edges followed on the last iteration
+	 */
+	long getPushedEdges() {
+		return pushedEdges;
+	}
+
+	/**
+	 * Gets the number of nodes skipped on all iterations so far
+	 */
+	long getSkippedNodes() {
+		return skippedNodes;
+	}
+
+	/**
+	 * Gets the number of edges skipped on all iterations so far
+	 */
+	long getSkippedEdges() {
+		return skippedEdges;
+	}
+}
@@ -15,6 +15,8 @@ public class TableStorage {
 
 	private final PairCollection collection;
 	private PairConnection connection;
+	// the values of the current row while visiting the rows, reused between the rows and the visits
+	private long[] rowValues = new long[16];
 
 	public abstract static class Iterator {
 		public abstract boolean hasNext();
@@ -24,6 +26,19 @@ public class TableStorage {
 		public abstract long size();
 	}
 
+	/**
+	 * Receives the rows of the storage one by one
+	 */
+	public interface RowVisitor {
+		/**
+		 * Visits a non-empty row
+		 *
+		 * @param values the array holding the values of the row in its first <code>size</code> elements, it is
+		 *        reused for the next rows
+		 */
+		void visit(long row, long[] values, int size);
+	}
+
 	public TableStorage(String pathPrefix, long x, long y, int valuesBitSize) {
 		rows = x;
 		cols = y;
@@ -88,6 +103,39 @@ public class TableStorage {
 		};
 	}
 
+	/**
+	 * Visits the non-empty rows in increasing order on a single pass over the storage. Unlike
+	 * {@link #rowIterator(long)} it allocates nothing per row, as the values of every row are collected in the
+	 * same buffer.
+	 */
+	public void forEachRow(RowVisitor visitor) {
+		long[] values = rowValues;
+		int size = 0;
+		long row = -1;
+		try (StatementIdIterator iter = connection.get(0, Long.MIN_VALUE, rows - 1, Long.MAX_VALUE)) {
+			while (iter.hasNext()) {
+				if (iter.subj != row) {
+					if (iter.subj < row) {
+						throw new IllegalStateException("The rows are not in increasing order");
+					}
+					if (size > 0) {
+						visitor.visit(row, values, size);
+					}
+					row = iter.subj;
+					size = 0;
+				}
+				if (size >= values.length) {
+					values = rowValues = Arrays.copyOf(values, values.length * 2);
+				}
+				values[size++] = iter.pred;
+				iter.next();
+			}
+		}
+		if (size > 0) {
+			visitor.visit(row, values, size);
+		}
+	}
+
 	public void shutDown() {
 		try {
 			if (connection != null) {
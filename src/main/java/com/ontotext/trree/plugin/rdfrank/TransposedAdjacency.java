@@ -0,0 +1,118 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.trree.sdk.PluginException;
+
+/**
+ * Inbound (transposed) adjacency of the graph together with the reciprocals of the out-degrees of the nodes.
+ * It allows computing the new rank of every node as a gather over its in-neighbours, so the rank of each
+ * node is written only once and by a single thread.
+ */
+class TransposedAdjacency {
+	private final CSRAdjacency inbound;
+	// the float bits of 1/out-degree of every node, 0 for nodes without outgoing links
+	private final ChunkedIntArray weights;
+
+	private TransposedAdjacency(CSRAdjacency inbound, ChunkedIntArray weights) {
+		this.inbound = inbound;
+		this.weights = weights;
+	}
+
+	/**
+	 * Gets the adjacency in which the row of a node holds the sources of its incoming edges
+	 */
+	CSRAdjacency inbound() {
+		return inbound;
+	}
+
+	long nodeCount() {
+		return inbound.nodeCount();
+	}
+
+	/**
+	 * Gets the part of the rank of a node that goes along each of its outgoing links
+	 */
+	float weight(long node) {
+		return Float.intBitsToFloat(weights.get(node));
+	}
+
+	boolean isDangling(long node) {
+		return weights.get(node) == 0;
+	}
+
+	/**
+	 * Estimates the memory in bytes needed for the transposed adjacency of a graph
+	 */
+	static long estimateMemory(long nodes, long edges, int entityBitSize) {
+		return CSRAdjacency.estimateMemory(nodes, edges, entityBitSize) + ChunkedIntArray.bytesFor(nodes);
+	}
+
+	static class Builder implements AdjacencyBuilder<TransposedAdjacency> {
+		private final long nodes;
+		private final int entityBitSize;
+		private final boolean distinct;
+		private final CSRAdjacency.Builder inbound;
+		private final ChunkedIntArray weights;
+
+		/**
+		 * @param distinct whether the duplicate edges are removed when the adjacency is built
+		 */
+		Builder(long nodes, int entityBitSize, boolean distinct) {
+			this.nodes = nodes;
+			this.entityBitSize = entityBitSize;
+			this.distinct = distinct;
+			inbound = new CSRAdjacency.Builder(nodes, entityBitSize, distinct);
+			// holds the out-degrees until the adjacency is built
+			weights = new ChunkedIntArray(nodes);
+		}
+
+		@Override
+		public void count(long from, long to) {
+			inbound.count(to, from);
+			int degree = weights.get(from);
+			if (degree == Integer.MAX_VALUE) {
+				throw new PluginException("Too many outgoing links of node " + from);
+			}
+			weights.set(from, degree + 1);
+		}
+
+		@Override
+		public long edgeCount() {
+			return inbound.edgeCount();
+		}
+
+		@Override
+		public long estimateMemory() {
+			return TransposedAdjacency.estimateMemory(nodes, edgeCount(), entityBitSize);
+		}
+
+		@Override
+		public void startFill() {
+			inbound.startFill();
+		}
+
+		@Override
+		public void fill(long from, long to) {
+			inbound.fill(to, from);
+		}
+
+		@Override
+		public TransposedAdjacency build() {
+			CSRAdjacency adjacency = inbound.build();
+			if (distinct) {
+				// count the out-degrees again without the duplicates
+				for (long idx = 0; idx < nodes; idx++) {
+					weights.set(idx, 0);
+				}
+				for (long edge = 0; edge < adjacency.edgeCount(); edge++) {
+					long source = adjacency.target(edge);
+					weights.set(source, weights.get(source) + 1);
+				}
+			}
+			for (long idx = 0; idx < nodes; idx++) {
+				int degree = weights.get(idx);
+				weights.set(idx, degree == 0 ? 0 : Float.floatToRawIntBits(1f / degree));
+			}
+			return new TransposedAdjacency(adjacency, weights);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Graph reader over edges kept in arrays, used to test the rank computation without a repository
+ */
+class ArrayGraphReader extends GraphReader {
+	private final long nodeCount;
+	private final long[] fromNodes;
+	private final long[] toNodes;
+	private int current;
+
+	ArrayGraphReader(long nodeCount, long[] fromNodes, long[] toNodes) {
+		this.nodeCount = nodeCount;
+		this.fromNodes = fromNodes;
+		this.toNodes = toNodes;
+	}
+
+	/**
+	 * Creates a reader over a random graph in which the in-degrees follow a power law, similar to the
+	 * rdf:type hubs of the real data
+	 */
+	static ArrayGraphReader powerLaw(int nodes, int edges, long seed) {
+		return powerLaw(nodes, edges, seed, 1);
+	}
+
+	/**
+	 * Creates a reader over a random power law graph in which only every stride-th entity ID takes part, like
+	 * the resources among the literals of the real data
+	 */
+	static ArrayGraphReader powerLaw(int nodes, int edges, long seed, int stride) {
+		Random random = new Random(seed);
+		long[] from = new long[edges];
+		long[] to = new long[edges];
+		for (int idx = 0; idx < edges; idx++) {
+			from[idx] = 1 + (long) stride * random.nextInt(nodes);
+			to[idx] = 1 + stride * (long) (nodes * Math.pow(random.nextDouble(), 3));
+		}
+		return new ArrayGraphReader((long) nodes * stride, from, to);
+	}
+
+	/**
+	 * Creates a reader over a random graph in which most links point to nearby entity IDs, like the links
+	 * within a site or a dataset. The rank spreads slowly over such a graph and needs more iterations.
+	 */
+	static ArrayGraphReader local(int nodes, int edges, long seed) {
+		Random random = new Random(seed);
+		long[] from = new long[edges];
+		long[] to = new long[edges];
+		for (int idx = 0; idx < edges; idx++) {
+			int source = random.nextInt(nodes);
+			int distance = (int) Math.pow(nodes, random.nextDouble() * random.nextDouble());
+			from[idx] = 1 + source;
+			to[idx] = 1 + (source + distance) % nodes;
+		}
+		return new ArrayGraphReader(nodes, from, to);
+	}
+
+	@Override
+	public long nodeCount() {
+		return nodeCount;
+	}
+
+	@Override
+	public long size() {
+		return fromNodes.length;
+	}
+
+	@Override
+	public void reset() {
+		current = 0;
+	}
+
+	/**
+	 * Splits the edges into consecutive slices
+	 */
+	@Override
+	public List<GraphReader> partition(int count) {
+		List<GraphReader> partitions = new ArrayList<>(count);
+		for (int idx = 0; idx < count; idx++) {
+			int start = (int) ((long) fromNodes.length * idx / count);
+			int end = (int) ((long) fromNodes.length * (idx + 1) / count);
+			partitions.add(new ArrayGraphReader(nodeCount, Arrays.copyOfRange(fromNodes, start, end),
+					Arrays.copyOfRange(toNodes, start, end)));
+		}
+		return partitions;
+	}
+
+	@Override
+	public boolean next() {
+		if (current >= fromNodes.length) {
+			return false;
+		}
+		from = fromNodes[current];
+		to = toNodes[current];
+		current++;
+		return true;
+	}
+
+	@Override
+	public int nextBatch(long[] from, long[] to) {
+		int count = Math.min(from.length, fromNodes.length - current);
+		System.arraycopy(fromNodes, current, from, 0, count);
+		System.arraycopy(toNodes, current, to, 0, count);
+		current += count;
+		return count;
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,158 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.test.TemporaryLocalFolder;
+import com.ontotext.trree.sdk.PluginException;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDeltaLog {
+
+	private static final int NODES = 2000;
+	private static final int EDGES = 20000;
+
+	@Rule
+	public TemporaryLocalFolder tmpFolder = new TemporaryLocalFolder();
+
+	@Test
+	public void testDeltaLogAppliedToSnapshot() {
+		File file = new File(tmpFolder.getRoot(), "graph.snapshot");
+		DeltaLog delta = new DeltaLog(new File(tmpFolder.getRoot(), "graph.delta"));
+		ArrayGraphReader graph = ArrayGraphReader.powerLaw(NODES, EDGES, 31);
+		GraphSnapshot.Recorder recorder = new GraphSnapshot.Recorder(graph, file, 1, EDGES, 32, () -> true, delta);
+		createComputer().compute(recorder);
+		assertTrue(recorder.isRecorded());
+
+		// the first 100 edges are removed and 50 new ones added, one of them twice
+		long[] from = new long[EDGES - 100 + 51];
+		long[] to = new long[from.length];
+		graph.reset();
+		for (int idx = 0; idx < EDGES; idx++) {
+			graph.next();
+			if (idx < 100) {
+				delta.edgeRemoved(graph.getFrom(), graph.getTo());
+				delta.statementChanged(-1);
+			} else {
+				from[idx - 100] = graph.getFrom();
+				to[idx - 100] = graph.getTo();
+			}
+		}
+		for (int idx = 0; idx < 51; idx++) {
+			from[EDGES - 100 + idx] = 1 + idx % 50;
+			to[EDGES - 100 + idx] = NODES - idx % 50;
+			delta.edgeAdded(1 + idx % 50, NODES - idx % 50);
+			delta.statementChanged(1);
+		}
+		// a statement that is not an edge of the graph
+		delta.statementChanged(1);
+		delta.commit();
+		// an aborted transaction
+		delta.edgeAdded(1, 2);
+		delta.statementChanged(1);
+		delta.rollback();
+		delta.commit();
+		assertFalse(delta.isEmpty());
+
+		RankVector expected = createComputer().compute(new ArrayGraphReader(NODES, from, to));
+		assertNull(GraphSnapshot.open(file, 1, EDGES, delta));
+		GraphSnapshot snapshot = GraphSnapshot.open(file, 1, EDGES - 100 + 52, delta);
+		assertEquals(from.length, snapshot.edgeCount());
+		assertTrue(delta.isEmpty());
+		// the added edges follow the rest in another order
+		TestRankComputer.assertRanksEqual(expected, createComputer().compute(snapshot.reader(NODES)), 1e-6f);
+
+		// a removed edge missing in the snapshot
+		delta.edgeRemoved(NODES + 1, 1);
+		delta.statementChanged(-1);
+		delta.commit();
+		assertNull(GraphSnapshot.open(file, 1, EDGES - 100 + 51, delta));
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testReadPastTheEndFails() {
+		DeltaLog log = new DeltaLog(new File(tmpFolder.getRoot(), "graph.delta"));
+		log.edgeAdded(1, 2);
+		log.statementChanged(1);
+		log.commit();
+		log.edgeAdded(3, 4);
+		log.statementChanged(1);
+		log.commit();
+		long position = log.length();
+
+		// the log is started again shorter than the position taken before
+		log.clear();
+		log.edgeRemoved(1, 2);
+		log.statementChanged(-1);
+		log.commit();
+		assertTrue(log.length() < position);
+		try {
+			log.read(new Edges(), position);
+			fail("Expected a failure");
+		} catch (PluginException e) {
+			// expected
+		}
+
+		Edges edges = new Edges();
+		assertEquals(-1, log.read(edges, 0));
+		assertEquals(1, edges.removed.size());
+	}
+
+	@Test
+	public void testFailedCommitIsReported() {
+		File file = new File(tmpFolder.getRoot(), "graph.delta");
+		DeltaLog log = new DeltaLog(file);
+		log.edgeAdded(1, 2);
+		log.statementChanged(1);
+		assertTrue(log.commit());
+		long position = log.length();
+
+		// the log cannot be appended to while its path is taken by a directory
+		file.delete();
+		assertTrue(file.mkdir());
+		log.edgeAdded(3, 4);
+		log.statementChanged(1);
+		assertFalse(log.commit());
+		assertFalse(file.exists());
+
+		// the log started again grows past the position taken before, so only the failure tells it apart
+		for (int idx = 0; idx < 3; idx++) {
+			log.edgeAdded(5, 6 + idx);
+			log.statementChanged(1);
+			assertTrue(log.commit());
+		}
+		assertTrue(log.length() > position);
+		Edges edges = new Edges();
+		log.read(edges, 0);
+		assertEquals(3, edges.added.size());
+		assertEquals(5, edges.added.get(0)[0]);
+	}
+
+	private RankComputer createComputer() {
+		return TestRankComputer.createComputer(tmpFolder.getRoot());
+	}
+
+	private static class Edges implements DeltaLog.Visitor {
+		private final List<long[]> added = new ArrayList<>();
+		private final List<long[]> removed = new ArrayList<>();
+
+		@Override
+		public void added(long from, long to) {
+			added.add(new long[] { from, to });
+		}
+
+		@Override
+		public void removed(long from, long to) {
+			removed.add(new long[] { from, to });
+		}
+	}
+}
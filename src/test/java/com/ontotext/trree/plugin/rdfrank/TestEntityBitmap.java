@@ -0,0 +1,29 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestEntityBitmap {
+
+	@Test
+	public void testEntityBitmapReusesPreviousIds() {
+		EntityBitmap previous = EntityBitmap.of(100, id -> id % 3 == 0, null);
+		assertEquals(34, previous.count());
+
+		long[] tested = new long[1];
+		EntityBitmap bitmap = EntityBitmap.of(200, id -> {
+			tested[0]++;
+			return id % 3 == 0;
+		}, previous);
+
+		// the IDs in the whole words of the previous bitmap are not tested again
+		assertEquals(200 - 64, tested[0]);
+		assertEquals(67, bitmap.count());
+		for (long id = 0; id < 200; id++) {
+			assertEquals(id % 3 == 0, bitmap.get(id));
+		}
+		assertEquals(false, bitmap.get(300));
+		assertEquals(22, bitmap.countBelow(64));
+	}
+}
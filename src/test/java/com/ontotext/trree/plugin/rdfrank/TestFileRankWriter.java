@@ -0,0 +1,77 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.test.TemporaryLocalFolder;
+import com.ontotext.trree.util.BigFloatArray;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestFileRankWriter {
+
+	@Rule
+	public TemporaryLocalFolder tmpFolder = new TemporaryLocalFolder();
+
+	@Test
+	public void testRankSegment() throws IOException {
+		BigFloatArray stored = new BigFloatArray(100);
+		for (long idx = 0; idx < stored.length(); idx++) {
+			stored.set(idx, idx / 1000f);
+		}
+		String storageFile = new File(tmpFolder.getRoot(), "storage").getAbsolutePath();
+		FileRankWriter writer = new FileRankWriter(storageFile);
+		writer.write(RankVector.of(stored));
+		long length = new File(storageFile).length();
+
+		// an abandoned segment leaves the file as it was
+		try (FileRankWriter.Segment segment = writer.segment()) {
+			segment.put(100, 0.5);
+		}
+		writer.recover();
+		assertEquals(length, new File(storageFile).length());
+
+		// more records than a buffer, overwriting and appending
+		try (FileRankWriter.Segment segment = writer.segment()) {
+			segment.put(5, 0.25);
+			segment.put(6, 0.125);
+			for (long id = 100; id < 20000; id++) {
+				segment.put(id, id / 1e6);
+			}
+			segment.commit();
+		}
+		FileRankReader reader = new FileRankReader(storageFile);
+		assertEquals(20000, reader.size());
+		assertEquals(0.004, reader.read(4), 1e-7);
+		assertEquals(0.25, reader.read(5), 0);
+		assertEquals(0.125, reader.read(6), 0);
+		assertEquals(0.007, reader.read(7), 1e-7);
+		assertEquals(0.0199, reader.read(19900), 1e-12);
+		assertFalse(new File(storageFile + ".segment").exists());
+
+		// a crash while copying a committed segment, with a torn record at the end of the file
+		long committedLength = new File(storageFile).length();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(storageFile + ".segment"))) {
+			out.writeLong(committedLength);
+			out.writeInt(8);
+			out.writeDouble(0.75);
+			out.writeInt(20000);
+			out.writeDouble(0.5);
+		}
+		try (FileOutputStream out = new FileOutputStream(storageFile, true)) {
+			out.write(new byte[] { 0, 0, 0x4e, 0x20, 1, 2 });
+		}
+		writer.recover();
+		reader.reload();
+		assertEquals(20001, reader.size());
+		assertEquals(committedLength + 12, new File(storageFile).length());
+		assertEquals(0.75, reader.read(8), 0);
+		assertEquals(0.5, reader.read(20000), 0);
+		assertFalse(new File(storageFile + ".segment").exists());
+	}
+}
@@ -132,6 +132,51 @@ public class TestFilteredGraphReader {
 		expect();
 	}
 
+	@Test
+	public void testBatches() {
+		graphReader = createFilteredGraphReader(new StatementsImpl(Mockito.mock(PluginManager.class), conn), null, getSet(1l, 2l), EMPTY, EMPTY, getSet(1l), true, true, 0);
+		expectBatches(2, 1l, 3l, 4l);
+	}
+
+	@Test
+	public void testManyPredicatesAndGraphs() {
+		// too many patterns to open for such a small repository, a single scan checks every statement instead
+		Set<Long> predicates = getSet(1l, 2l);
+		Set<Long> graphs = getSet(1l, -3l);
+		for (long id = 100; id < 140; id++) {
+			predicates.add(id);
+			graphs.add(id);
+		}
+		graphReader = createFilteredGraphReader(new StatementsImpl(Mockito.mock(PluginManager.class), conn), null, predicates, graphs, EMPTY, EMPTY, true, true, 0);
+		assertEquals(FilteredGraphReader.AccessPath.SCAN, ((FilteredGraphReader) graphReader).getAccessPath());
+		expect(1l, 2l);
+	}
+
+	@Test
+	public void testExcludedIncludedPredicate() {
+		// the excluded predicate is not read at all
+		graphReader = createFilteredGraphReader(new StatementsImpl(Mockito.mock(PluginManager.class), conn), null, getSet(1l, 2l), EMPTY, getSet(1l), EMPTY, true, true, 0);
+		assertEquals(FilteredGraphReader.AccessPath.PREDICATES, ((FilteredGraphReader) graphReader).getAccessPath());
+		expect(2l, 4l);
+	}
+
+	@Test
+	public void testPartitions() {
+		graphReader = createFilteredGraphReader(new StatementsImpl(Mockito.mock(PluginManager.class), conn), null, getSet(1l, 2l), EMPTY, EMPTY, getSet(1l), true, true, 0);
+		List<GraphReader> partitions = graphReader.partition(4);
+		// a partition for each included predicate
+		assertEquals(2, partitions.size());
+		List<Long> expected = new LinkedList<>(Arrays.asList(1l, 3l, 4l));
+		for (GraphReader partition : partitions) {
+			partition.reset();
+			while (partition.next()) {
+				assertTrue(expected.remove(partition.getFrom()));
+			}
+			partition.close();
+		}
+		assertTrue(expected.isEmpty());
+	}
+
 	private GraphReader createFilteredGraphReader(Statements statements, Entities entities, Set<Long> includedPredicates, Set<Long> includedGraphs, Set<Long> excludedPredicates, Set<Long> excludedGraphs, boolean includeExplicit, boolean includeImplicit, long object) {
 		FilteredGraphReader graphReader = new FilteredGraphReader(statements, entities, includedPredicates, includedGraphs, excludedPredicates, excludedGraphs, includeExplicit, includeImplicit, object);
 		graphReader.reset();
@@ -178,6 +223,20 @@ public class TestFilteredGraphReader {
 		assertTrue(expected.isEmpty());
 	}
 
+	private void expectBatches(int batchSize, Long... fromNodes) {
+		List<Long> expected = new LinkedList<>();
+		expected.addAll(Arrays.asList(fromNodes));
+		long[] from = new long[batchSize];
+		long[] to = new long[batchSize];
+		for (int count; (count = graphReader.nextBatch(from, to)) > 0;) {
+			for (int idx = 0; idx < count; idx++) {
+				assertEquals(from[idx], to[idx]);
+				assertTrue(expected.remove(from[idx]));
+			}
+		}
+		assertTrue(expected.isEmpty());
+	}
+
 	private Set<Long> getSet(Long... elements) {
 		Set<Long> includePredicate = new HashSet<>(1);
 		includePredicate.addAll(Arrays.asList(elements));
@@ -0,0 +1,61 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.test.TemporaryLocalFolder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestGraphSnapshot {
+
+	private static final int NODES = 2000;
+	private static final int EDGES = 20000;
+
+	@Rule
+	public TemporaryLocalFolder tmpFolder = new TemporaryLocalFolder();
+
+	@Test
+	public void testGraphSnapshot() {
+		File file = new File(tmpFolder.getRoot(), "graph.snapshot");
+		RankVector expected = createComputer().compute(ArrayGraphReader.powerLaw(NODES, EDGES, 29));
+
+		// a graph changed while being recorded is not published
+		GraphSnapshot.Recorder changed = new GraphSnapshot.Recorder(ArrayGraphReader.powerLaw(NODES, EDGES, 29),
+				file, 1, 2, 32, () -> false, null);
+		createComputer().compute(changed);
+		assertFalse(changed.isRecorded());
+		assertFalse(file.exists());
+
+		GraphSnapshot.Recorder recorder = new GraphSnapshot.Recorder(ArrayGraphReader.powerLaw(NODES, EDGES, 29),
+				file, 1, 2, 32, () -> true, null);
+		RankComputer recording = createComputer();
+		TestRankComputer.assertRanksEqual(expected, recording.compute(recorder), 0f);
+		assertTrue(recorder.isRecorded());
+		assertEquals("recorded", recording.getStatistics().get("snapshot"));
+
+		assertNull(GraphSnapshot.open(file, 3, 2));
+		assertNull(GraphSnapshot.open(file, 1, 3));
+		GraphSnapshot snapshot = GraphSnapshot.open(file, 1, 2);
+		assertEquals(EDGES, snapshot.edgeCount());
+
+		RankComputer reusing = createComputer();
+		TestRankComputer.assertRanksEqual(expected, reusing.compute(snapshot.reader(NODES)), 0f);
+		assertEquals("reused", reusing.getStatistics().get("snapshot"));
+
+		RankComputer parallel = createComputer();
+		parallel.setLoadingParallelism(4);
+		parallel.setMemoryBudget(1);
+		// the order of the edges of a node and so of the floating point additions differs
+		TestRankComputer.assertRanksEqual(expected, parallel.compute(snapshot.reader(NODES)), 1e-6f);
+		assertEquals(4, snapshot.reader(NODES).partition(4).size());
+	}
+
+	private RankComputer createComputer() {
+		return TestRankComputer.createComputer(tmpFolder.getRoot());
+	}
+}
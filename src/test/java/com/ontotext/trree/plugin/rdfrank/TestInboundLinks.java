@@ -0,0 +1,48 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.test.TemporaryLocalFolder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestInboundLinks {
+
+	@Rule
+	public TemporaryLocalFolder tmpFolder = new TemporaryLocalFolder();
+
+	@Test
+	public void testInboundLinks() {
+		long begin = 5000, end = 6000;
+		// more links from the ranked IDs than a batch of resolved ranks
+		ArrayGraphReader graph = ArrayGraphReader.powerLaw((int) end, 2000000, 41);
+		File file = new File(tmpFolder.getRoot(), "links.tmp");
+		try (InboundLinks links = new InboundLinks(begin, end, id -> id * 1e-5, file)) {
+			int[] expectedLinks = new int[(int) end];
+			int[] expectedStableLinks = new int[(int) end];
+			double[] expectedStableRanks = new double[(int) end];
+			for (graph.reset(); graph.next();) {
+				links.add(graph.getFrom(), graph.getTo());
+				if (graph.getTo() >= begin && graph.getTo() < end) {
+					expectedLinks[(int) graph.getTo()]++;
+					if (graph.getFrom() < begin) {
+						expectedStableLinks[(int) graph.getTo()]++;
+						expectedStableRanks[(int) graph.getTo()] += graph.getFrom() * 1e-5;
+					}
+				}
+			}
+			links.finish();
+			for (long id = begin; id < end; id++) {
+				assertEquals(expectedLinks[(int) id], links.getLinks(id));
+				assertEquals(expectedStableLinks[(int) id], links.getStableLinks(id));
+				double expected = expectedStableLinks[(int) id] != 0
+						? expectedStableRanks[(int) id] / expectedStableLinks[(int) id] : 0;
+				assertEquals(expected, links.getStableRank(id), 1e-12);
+			}
+		}
+		assertFalse(file.exists());
+	}
+}
@@ -0,0 +1,176 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.test.TemporaryLocalFolder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestIncrementalRank {
+
+	private static final int NODES = 2000;
+	private static final int EDGES = 20000;
+
+	@Rule
+	public TemporaryLocalFolder tmpFolder = new TemporaryLocalFolder();
+
+	@Test
+	public void testIncrementalRankFollowsChangedEdges() {
+		ArrayGraphReader graph = ArrayGraphReader.local(NODES, EDGES, 37);
+		RankComputer computer = createComputer();
+		computer.setMaxIterations(200);
+		computer.setEpsilon(1e-7f);
+		RankVector previous = computer.compute(graph);
+
+		// every 400th edge is removed, 50 edges are added and 10 new nodes are linked to
+		int nodes = NODES + 10;
+		List<long[]> edges = new ArrayList<>();
+		List<long[]> removed = new ArrayList<>();
+		List<long[]> added = new ArrayList<>();
+		graph.reset();
+		for (int idx = 0; graph.next(); idx++) {
+			(idx % 400 == 0 ? removed : edges).add(new long[] { graph.getFrom(), graph.getTo() });
+		}
+		Random random = new Random(37);
+		for (int idx = 0; idx < 50; idx++) {
+			added.add(new long[] { 1 + random.nextInt(nodes), 1 + random.nextInt(NODES) });
+		}
+		for (int id = NODES + 1; id <= nodes; id++) {
+			added.add(new long[] { 1 + random.nextInt(NODES), id });
+		}
+		edges.addAll(added);
+		Map<Long, List<Long>> targets = new HashMap<>();
+		long[] from = new long[edges.size()];
+		long[] to = new long[edges.size()];
+		for (int idx = 0; idx < edges.size(); idx++) {
+			from[idx] = edges.get(idx)[0];
+			to[idx] = edges.get(idx)[1];
+			targets.computeIfAbsent(from[idx], id -> new ArrayList<>()).add(to[idx]);
+		}
+		computer = createComputer();
+		computer.setMaxIterations(200);
+		computer.setEpsilon(1e-7f);
+		RankVector expected = computer.compute(new ArrayGraphReader(nodes, from, to));
+
+		IncrementalRank incremental = new IncrementalRank(
+				id -> targets.getOrDefault(id, Collections.emptyList()).stream().mapToLong(Long::longValue).toArray(),
+				id -> id < previous.length() ? previous.get(id) : -1, nodes + 1, RankComputer.DAMPING_FACTOR, 1e-3f);
+		removed.forEach(edge -> incremental.removed(edge[0], edge[1]));
+		added.forEach(edge -> incremental.added(edge[0], edge[1]));
+		for (int id = NODES + 1; id <= nodes; id++) {
+			incremental.nodeAdded(id);
+		}
+		assertTrue(incremental.compute(() -> false));
+		// the pushes fade out before reaching the whole graph
+		assertTrue(incremental.getChangedNodes().length < nodes);
+
+		// the ranks are not normalized again
+		double staleTotal = 0, total = 0;
+		for (long id = 0; id <= nodes; id++) {
+			staleTotal += id < previous.length() ? previous.get(id) : 0;
+			total += incremental.getRank(id);
+		}
+		double staleError = 0, error = 0;
+		for (long id = 0; id <= nodes; id++) {
+			staleError += Math.abs(expected.get(id) - (id < previous.length() ? previous.get(id) : 0) / staleTotal);
+			error += Math.abs(expected.get(id) - incremental.getRank(id) / total);
+		}
+		assertTrue(error + " " + staleError, error < staleError / 10);
+	}
+
+	@Test
+	public void testIncrementalRankWithoutLiterals() {
+		// every node links to one of the literals with IDs above the nodes
+		int literals = 500;
+		int nodes = NODES + literals;
+		long[] from = new long[EDGES + NODES];
+		long[] to = new long[EDGES + NODES];
+		ArrayGraphReader graph = ArrayGraphReader.local(NODES, EDGES, 41);
+		int edge = 0;
+		for (graph.reset(); graph.next(); edge++) {
+			from[edge] = graph.getFrom();
+			to[edge] = graph.getTo();
+		}
+		for (int node = 1; node <= NODES; node++, edge++) {
+			from[edge] = node;
+			to[edge] = NODES + 1 + node % literals;
+		}
+		RankComputer computer = createComputer();
+		computer.setMaxIterations(200);
+		computer.setEpsilon(1e-7f);
+		RankVector previous = computer.compute(new ProjectedGraphReader(new ArrayGraphReader(nodes, from, to),
+				EntityBitmap.of(nodes + 1, id -> id > NODES, null)));
+
+		// 50 edges are added, 10 new nodes are linked to and 5 new literals follow them
+		int newNodes = nodes + 10;
+		int newLiterals = newNodes + 5;
+		List<long[]> edges = new ArrayList<>();
+		for (int idx = 0; idx < from.length; idx++) {
+			edges.add(new long[] { from[idx], to[idx] });
+		}
+		List<long[]> added = new ArrayList<>();
+		Random random = new Random(41);
+		for (int idx = 0; idx < 50; idx++) {
+			added.add(new long[] { 1 + random.nextInt(NODES), 1 + random.nextInt(NODES) });
+		}
+		for (int id = nodes + 1; id <= newNodes; id++) {
+			added.add(new long[] { 1 + random.nextInt(NODES), id });
+			edges.add(new long[] { id, newNodes + 1 + id % 5 });
+		}
+		edges.addAll(added);
+		Map<Long, List<Long>> targets = new HashMap<>();
+		from = new long[edges.size()];
+		to = new long[edges.size()];
+		for (int idx = 0; idx < edges.size(); idx++) {
+			from[idx] = edges.get(idx)[0];
+			to[idx] = edges.get(idx)[1];
+			if (to[idx] <= NODES || to[idx] > nodes && to[idx] <= newNodes) {
+				targets.computeIfAbsent(from[idx], id -> new ArrayList<>()).add(to[idx]);
+			}
+		}
+		EntityBitmap excluded = EntityBitmap.of(newLiterals + 1,
+				id -> id > NODES && id <= nodes || id > newNodes, null);
+		computer = createComputer();
+		computer.setMaxIterations(200);
+		computer.setEpsilon(1e-7f);
+		RankVector expected = computer.compute(
+				new ProjectedGraphReader(new ArrayGraphReader(newLiterals, from, to), excluded));
+
+		// the ranks are spread over the same nodes as in the full computation, the literals left out
+		IncrementalRank incremental = new IncrementalRank(
+				id -> targets.getOrDefault(id, Collections.emptyList()).stream().mapToLong(Long::longValue).toArray(),
+				id -> id < previous.length() ? previous.get(id) : -1, newLiterals + 1 - excluded.count(),
+				RankComputer.DAMPING_FACTOR, 1e-4f);
+		added.forEach(link -> incremental.added(link[0], link[1]));
+		for (int id = nodes + 1; id <= newNodes; id++) {
+			incremental.nodeAdded(id);
+		}
+		assertTrue(incremental.compute(() -> false));
+
+		double staleError = 0, error = 0;
+		for (long id = 0; id <= newLiterals; id++) {
+			staleError += Math.abs(expected.get(id) - (id < previous.length() ? previous.get(id) : 0));
+			error += Math.abs(expected.get(id) - incremental.getRank(id));
+		}
+		assertTrue(error + " " + staleError, error < staleError / 5);
+		// the new nodes start from the reset probability of the ranked nodes
+		for (int id = nodes + 1; id <= newNodes; id++) {
+			assertEquals("Rank of " + id, expected.get(id), incremental.getRank(id), expected.get(id) * 0.02);
+		}
+		for (long id = newNodes + 1; id <= newLiterals; id++) {
+			assertEquals(0, incremental.getRank(id), 0);
+		}
+	}
+
+	private RankComputer createComputer() {
+		return TestRankComputer.createComputer(tmpFolder.getRoot());
+	}
+}
@@ -0,0 +1,31 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLongSet {
+
+	@Test
+	public void testLongSet() {
+		// small IDs in a bitmap, large and negative ones in a hash table
+		for (long base : new long[] { 0, 1L << 40, -1000 }) {
+			Set<Long> values = new HashSet<>();
+			for (long value = 0; value < 1000; value += 7) {
+				values.add(base + value);
+			}
+			LongSet set = LongSet.of(values);
+			assertEquals(values.size(), set.size());
+			for (long value = -100; value < 1100; value++) {
+				assertEquals(values.contains(base + value), set.contains(base + value));
+			}
+		}
+		assertTrue(LongSet.of(null).isEmpty());
+		assertFalse(LongSet.of(new HashSet<>()).contains(0));
+	}
+}
@@ -0,0 +1,36 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.test.TemporaryLocalFolder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestMappedLongArray {
+
+	@Rule
+	public TemporaryLocalFolder tmpFolder = new TemporaryLocalFolder();
+
+	@Test
+	public void testMappedLongArray() {
+		File file = new File(tmpFolder.getRoot(), "array.tmp");
+		// spans two segments, the file stays sparse
+		long length = (1L << 23) + 10;
+		try (MappedLongArray array = new MappedLongArray(file, length)) {
+			assertEquals(0, array.get(length - 1));
+			array.set((1L << 23) - 1, 7);
+			array.add((1L << 23) - 1, 5);
+			array.add(1L << 23, -3);
+			array.addDouble(length - 1, 0.25);
+			array.addDouble(length - 1, 0.5);
+			assertEquals(12, array.get((1L << 23) - 1));
+			assertEquals(-3, array.get(1L << 23));
+			assertEquals(0.75, array.getDouble(length - 1), 0);
+			assertEquals(0, array.get(0));
+		}
+		assertFalse(file.exists());
+	}
+}
@@ -0,0 +1,30 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestNodeIndex {
+
+	@Test
+	public void testNodeIndex() {
+		NodeIndex nodes = new NodeIndex(200);
+		long[] ids = { 3, 63, 64, 65, 127, 128, 199 };
+		for (long id : ids) {
+			nodes.mark(id);
+		}
+		nodes.mark(64);
+		nodes.seal();
+
+		assertEquals(200, nodes.size());
+		assertEquals(ids.length, nodes.count());
+		for (int idx = 0; idx < ids.length; idx++) {
+			assertTrue(nodes.contains(ids[idx]));
+			assertEquals(idx, nodes.dense(ids[idx]));
+		}
+		assertEquals(false, nodes.contains(0));
+		assertEquals(false, nodes.contains(66));
+		assertEquals(4, nodes.dense(66));
+	}
+}
@@ -178,6 +178,58 @@ public class TestRDFRankFiltered extends TestRDFRankAbstract {
 		conn.prepareBooleanQuery("ASK {_:b <" + RDFRank.COMPUTE + "> true .}").evaluate();
 	}
 
+	@Test
+	public void testIncrementalPush() {
+		IRI link = vf.createIRI("http:link");
+		IRI ignored = vf.createIRI("http:ignored");
+		conn.add(ignored, RDFRank.EXCLUDED_PREDICATES, vf.createLiteral("add"));
+		conn.add(RDFRank.EPSILON, RDFRank.SET_PARAM, vf.createLiteral("0.00001"));
+		conn.add(RDFRank.MAX_ITERATIONS, RDFRank.SET_PARAM, vf.createLiteral("200"));
+		conn.add(RDFRank.SNAPSHOT, RDFRank.SET_PARAM, vf.createLiteral("true"));
+		conn.add(RDFRank.TRACK_CHANGES, RDFRank.SET_PARAM, vf.createLiteral("true"));
+		conn.add(RDFRank.INCREMENTAL_PUSH, RDFRank.SET_PARAM, vf.createLiteral("true"));
+
+		// a ring of eight nodes with two chords
+		for (int i = 0; i < 8; i++) {
+			conn.add(valuesPool.get(i), link, valuesPool.get((i + 1) % 8));
+		}
+		conn.add(valuesPool.get(0), link, valuesPool.get(4));
+		conn.add(valuesPool.get(2), link, valuesPool.get(6));
+		conn.add(valuesPool.get(5), ignored, valuesPool.get(1));
+		computeRank();
+		double before = getRank(valuesPool.get(3));
+
+		// node 3 gains two links, a chord is removed, a new node is linked to and the statements of the
+		// ignored predicate do not change the graph
+		conn.add(valuesPool.get(5), link, valuesPool.get(3));
+		conn.add(valuesPool.get(7), link, valuesPool.get(3));
+		conn.remove(valuesPool.get(2), link, valuesPool.get(6));
+		conn.add(valuesPool.get(0), link, valuesPool.get(8));
+		conn.add(valuesPool.get(1), ignored, valuesPool.get(6));
+		conn.add(valuesPool.get(4), ignored, valuesPool.get(6));
+		conn.remove(valuesPool.get(5), ignored, valuesPool.get(1));
+		computeIncrementalRank();
+
+		assertTrue(getStatistics(), getStatistics().contains("incremental=push"));
+		assertTrue(getRank(valuesPool.get(3)) > before);
+		double[] pushed = new double[9];
+		for (int i = 0; i < pushed.length; i++) {
+			pushed[i] = getRank(valuesPool.get(i));
+		}
+
+		// the pushed ranks are scaled by the thresholds of the previous computation
+		computeRank();
+		for (int i = 0; i < pushed.length; i++) {
+			assertEquals("Rank of " + valuesPool.get(i), getRank(valuesPool.get(i)), pushed[i], 0.1);
+		}
+	}
+
+	private String getStatistics() {
+		try (TupleQueryResult result = conn.prepareTupleQuery("SELECT ?s WHERE {_:b <" + RDFRank.STATISTICS + "> ?s .}").evaluate()) {
+			return result.next().getBinding("s").getValue().stringValue();
+		}
+	}
+
 	private void expectValues(TupleQueryResult queryResult, Value... values) {
 		List<Value> expected = new LinkedList<>();
 		expected.addAll(Arrays.asList(values));
@@ -0,0 +1,491 @@
+package com.ontotext.trree.plugin.rdfrank;
+
+import com.ontotext.test.TemporaryLocalFolder;
+import com.ontotext.trree.util.BigFloatArray;
+import com.sun.management.ThreadMXBean;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestRankComputer {
+
+	private static final int NODES = 2000;
+	private static final int EDGES = 20000;
+
+	@Rule
+	public TemporaryLocalFolder tmpFolder = new TemporaryLocalFolder();
+
+	@Test
+	public void testInMemoryAdjacencyMatchesTableStorage() {
+		RankComputer inMemory = createComputer();
+		RankVector expected = inMemory.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 42));
+
+		RankComputer table = createComputer();
+		// too small for the in-memory adjacency
+		table.setMemoryBudget(1);
+		table.setGraphStorage(RankComputer.GraphStorage.TABLE);
+		RankVector actual = table.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 42));
+
+		assertRanksEqual(expected, actual, 0f);
+		assertEquals(table.getMinRank(), inMemory.getMinRank(), 0);
+		assertEquals(table.getMaxRank(), inMemory.getMaxRank(), 0);
+	}
+
+	@Test
+	public void testTableStorageVisitsRowsWithoutAllocation() {
+		String path = new File(tmpFolder.getRoot(), "table").getAbsolutePath();
+		TableStorage storage = new TableStorage(path, NODES + 1, NODES + 1, 32);
+		try {
+			GraphReader graph = ArrayGraphReader.powerLaw(NODES, EDGES, 11);
+			for (graph.reset(); graph.next();) {
+				storage.add(graph.getFrom(), graph.getTo());
+			}
+			long[] edges = new long[1];
+			TableStorage.RowVisitor visitor = (row, values, size) -> edges[0] += size;
+			// the first pass grows the row buffer up to the longest row
+			storage.forEachRow(visitor);
+			assertEquals(EDGES, edges[0]);
+
+			ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+			long before = threads.getCurrentThreadAllocatedBytes();
+			storage.forEachRow(visitor);
+			long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+			assertEquals(2 * EDGES, edges[0]);
+			// only the iterator over the storage, nothing per row
+			assertTrue("Allocated " + allocated + " bytes", allocated < 64 * 1024);
+		} finally {
+			storage.shutDown();
+		}
+	}
+
+	@Test
+	public void testEdgeFileMatchesInMemoryAdjacency() {
+		for (int entityBitSize : new int[] { 32, 40 }) {
+			RankComputer inMemory = createComputer();
+			inMemory.setEntityBitSize(entityBitSize);
+			RankVector expected = inMemory.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 42));
+
+			RankComputer stream = createComputer();
+			stream.setEntityBitSize(entityBitSize);
+			stream.setGraphStorage(RankComputer.GraphStorage.STREAM);
+			RankVector actual = stream.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 42));
+
+			assertEquals("stream", stream.getStatistics().get("graphStorage"));
+			assertRanksEqual(expected, actual, 0f);
+			assertEquals(stream.getMinRank(), inMemory.getMinRank(), 0);
+			assertEquals(stream.getMaxRank(), inMemory.getMaxRank(), 0);
+			assertFalse(new File(tmpFolder.getRoot(), "graph.edges").exists());
+		}
+	}
+
+	@Test
+	public void testExternalSortMergesRuns() {
+		RankComputer inMemory = createComputer();
+		RankVector expected = inMemory.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 42));
+
+		File scratch = new File(tmpFolder.getRoot(), "scratch");
+		RankComputer sorted = createComputer();
+		// too small for the in-memory adjacency and for a single sort buffer
+		sorted.setMemoryBudget(1);
+		sorted.setScratchDir(scratch);
+		RankVector actual = sorted.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 42));
+
+		assertEquals("stream", sorted.getStatistics().get("graphStorage"));
+		assertTrue(sorted.getStatistics().getLong("sortRuns") > 2);
+		// more runs than merge buffers
+		assertTrue(sorted.getStatistics().getLong("sortMerges") > 1);
+		assertRanksEqual(expected, actual, 0f);
+		assertEquals(0, scratch.list().length);
+	}
+
+	@Test
+	public void testDenseNodesWithEdgeFile() {
+		RankComputer all = createComputer();
+		RankVector expected = all.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 13, 2));
+
+		RankComputer dense = createComputer();
+		dense.setDenseNodes(true);
+		dense.setGraphStorage(RankComputer.GraphStorage.STREAM);
+		RankVector actual = dense.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 13, 2));
+
+		assertRanksEqual(expected, actual, 1e-6f);
+	}
+
+	@Test
+	public void testPipelinedLoadingMatchesSequential() {
+		for (boolean dense : new boolean[] { false, true }) {
+			for (long memoryBudget : new long[] { 0, 1 }) {
+				RankComputer sequential = createComputer();
+				sequential.setDenseNodes(dense);
+				sequential.setMemoryBudget(memoryBudget);
+				RankVector expected = sequential.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 17, 2));
+
+				RankComputer pipelined = createComputer();
+				pipelined.setDenseNodes(dense);
+				pipelined.setMemoryBudget(memoryBudget);
+				pipelined.setPipelinedLoading(true);
+				RankVector actual = pipelined.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 17, 2));
+
+				assertEquals(sequential.getStatistics().get("graphStorage"),
+						pipelined.getStatistics().get("graphStorage"));
+				assertRanksEqual(expected, actual, 0f);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelLoadingMatchesSequential() {
+		for (boolean dense : new boolean[] { false, true }) {
+			for (long memoryBudget : new long[] { 0, 1 }) {
+				RankComputer sequential = createComputer();
+				sequential.setDenseNodes(dense);
+				sequential.setMemoryBudget(memoryBudget);
+				RankVector expected = sequential.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 19, 2));
+
+				RankComputer parallel = createComputer();
+				parallel.setDenseNodes(dense);
+				parallel.setMemoryBudget(memoryBudget);
+				parallel.setLoadingParallelism(4);
+				RankVector actual = parallel.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 19, 2));
+
+				assertEquals(sequential.getStatistics().get("edges"), parallel.getStatistics().get("edges"));
+				// the order of the edges of a node and so of the floating point additions differs
+				assertRanksEqual(expected, actual, 1e-6f);
+			}
+		}
+	}
+
+	@Test
+	public void testDistinctEdges() {
+		ArrayGraphReader graph = ArrayGraphReader.powerLaw(NODES, EDGES, 23);
+		Set<List<Long>> edges = new LinkedHashSet<>();
+		for (graph.reset(); graph.next();) {
+			edges.add(Arrays.asList(graph.getFrom(), graph.getTo()));
+		}
+		assertTrue(edges.size() < EDGES);
+		long[] from = new long[edges.size()];
+		long[] to = new long[edges.size()];
+		int idx = 0;
+		for (List<Long> edge : edges) {
+			from[idx] = edge.get(0);
+			to[idx++] = edge.get(1);
+		}
+		RankVector expected = createComputer().compute(new ArrayGraphReader(graph.nodeCount(), from, to));
+
+		for (RankComputer.GraphStorage storage : RankComputer.GraphStorage.values()) {
+			for (RankComputer.Kernel kernel : RankComputer.Kernel.values()) {
+				RankComputer distinct = createComputer();
+				distinct.setDistinctEdges(true);
+				distinct.setGraphStorage(storage);
+				distinct.setKernel(kernel);
+				distinct.setMemoryBudget(storage == RankComputer.GraphStorage.AUTO ? 1 : 0);
+				RankVector actual = distinct.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 23));
+
+				assertEquals(EDGES, distinct.getStatistics().getLong("edges"));
+				assertEquals(edges.size(), distinct.getStatistics().getLong("distinctEdges"));
+				// the pull kernel adds up the in-neighbours in a different order
+				assertRanksEqual(expected, actual, 1e-6f);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelIterationMatchesSequential() {
+		RankComputer sequential = createComputer();
+		RankVector expected = sequential.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 7));
+
+		RankComputer parallel = createComputer();
+		parallel.setParallelism(4);
+		RankVector actual = parallel.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 7));
+
+		// the order of the floating point additions differs between the threads
+		assertRanksEqual(expected, actual, 1e-6f);
+		assertEquals(sequential.getMaxRank(), parallel.getMaxRank(), 1e-6);
+	}
+
+	@Test
+	public void testPullKernelMatchesPush() {
+		RankComputer push = createComputer();
+		RankVector expected = push.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 11));
+
+		for (int parallelism : new int[] { 1, 4 }) {
+			RankComputer pull = createComputer();
+			pull.setKernel(RankComputer.Kernel.PULL);
+			pull.setParallelism(parallelism);
+			RankVector actual = pull.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 11));
+
+			assertRanksEqual(expected, actual, 1e-6f);
+			assertEquals(push.getMinRank(), pull.getMinRank(), 1e-6);
+			assertEquals(push.getMaxRank(), pull.getMaxRank(), 1e-6);
+		}
+	}
+
+	@Test
+	public void testWarmStartFromStoredRanks() {
+		RankComputer cold = createConvergingComputer();
+		RankVector expected = cold.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 5));
+		assertEquals(false, cold.getStatistics().get("warmStart"));
+
+		// the stored ranks miss the last nodes, as if they were created after the computation
+		BigFloatArray stored = new BigFloatArray(NODES - 100);
+		for (long idx = 0; idx < stored.length(); idx++) {
+			stored.set(idx, expected.get(idx));
+		}
+		String storageFile = new File(tmpFolder.getRoot(), "storage").getAbsolutePath();
+		new FileRankWriter(storageFile).write(RankVector.of(stored));
+
+		RankComputer warm = createConvergingComputer();
+		warm.setInitialRanks(new FileRankReader(storageFile));
+		RankVector actual = warm.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 5));
+
+		assertEquals(true, warm.getStatistics().get("warmStart"));
+		assertEquals(stored.length(), warm.getStatistics().getLong("seededNodes"));
+		assertTrue(warm.getStatistics().getLong("iterations") < cold.getStatistics().getLong("iterations"));
+		assertRanksEqual(expected, actual, 1e-5f);
+	}
+
+	@Test
+	public void testDenseNodesMatchAllNodes() {
+		RankComputer all = createComputer();
+		RankVector expected = all.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 3, 3));
+
+		for (RankComputer.Kernel kernel : RankComputer.Kernel.values()) {
+			for (int parallelism : new int[] { 1, 4 }) {
+				RankComputer dense = createComputer();
+				dense.setDenseNodes(true);
+				dense.setKernel(kernel);
+				dense.setParallelism(parallelism);
+				RankVector actual = dense.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 3, 3));
+
+				assertTrue(dense.getStatistics().getLong("nodes") <= NODES);
+				// the full vector adds up the ranks of the isolated IDs one by one
+				assertRanksEqual(expected, actual, 1e-5f);
+				assertEquals(all.getMinRank(), dense.getMinRank(), 1e-6);
+				assertEquals(all.getMaxRank(), dense.getMaxRank(), 1e-5);
+			}
+		}
+	}
+
+	@Test
+	public void testDenseNodesWithTableStorage() {
+		RankComputer all = createComputer();
+		RankVector expected = all.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 13, 2));
+
+		RankComputer dense = createComputer();
+		dense.setDenseNodes(true);
+		dense.setMemoryBudget(1);
+		dense.setGraphStorage(RankComputer.GraphStorage.TABLE);
+		RankVector actual = dense.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 13, 2));
+
+		assertRanksEqual(expected, actual, 1e-6f);
+	}
+
+	@Test
+	public void testExcludedLiterals() {
+		RankComputer withoutLiterals = createComputer();
+		RankVector expected = withoutLiterals.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 17));
+
+		// the same graph with links from every node to a literal with an ID above the nodes
+		int literals = 500;
+		long[] from = new long[EDGES + NODES];
+		long[] to = new long[EDGES + NODES];
+		GraphReader graph = ArrayGraphReader.powerLaw(NODES, EDGES, 17);
+		int edge = 0;
+		for (graph.reset(); graph.next(); edge++) {
+			from[edge] = graph.getFrom();
+			to[edge] = graph.getTo();
+		}
+		for (int node = 1; node <= NODES; node++, edge++) {
+			from[edge] = node;
+			to[edge] = NODES + 1 + node % literals;
+		}
+		EntityBitmap excluded = EntityBitmap.of(NODES + literals + 1, id -> id > NODES, null);
+
+		RankComputer projected = createComputer();
+		RankVector actual = projected.compute(
+				new ProjectedGraphReader(new ArrayGraphReader(NODES + literals, from, to), excluded));
+
+		assertEquals(EDGES, projected.getStatistics().getLong("edges"));
+		assertEquals(literals, projected.getStatistics().getLong("excludedIds"));
+		assertEquals(NODES + literals + 1, actual.length());
+		for (long id = 0; id <= NODES; id++) {
+			assertEquals("Rank of " + id, expected.get(id), actual.get(id), 1e-5f);
+		}
+		for (long id = NODES + 1; id < actual.length(); id++) {
+			assertEquals(0f, actual.get(id), 0f);
+		}
+	}
+
+	@Test
+	public void testResidualModeMatchesPowerIterations() {
+		RankComputer power = createComputer();
+		power.setMaxIterations(200);
+		power.setEpsilon(1e-7f);
+		RankVector expected = power.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 19, 2));
+
+		for (boolean dense : new boolean[] { false, true }) {
+			RankComputer residual = createConvergingComputer();
+			residual.setMode(RankComputer.Mode.RESIDUAL);
+			residual.setDenseNodes(dense);
+			RankVector actual = residual.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 19, 2));
+
+			assertEquals(true, residual.getStatistics().get("converged"));
+			assertTrue(residual.getStatistics().getLong("skippedEdges") > 0);
+			assertRanksEqual(expected, actual, 1e-4f);
+			assertEquals(power.getMaxRank(), residual.getMaxRank(), 1e-4);
+		}
+	}
+
+	@Test
+	public void testResidualModeWarmStart() {
+		RankComputer cold = createConvergingComputer();
+		cold.setMode(RankComputer.Mode.RESIDUAL);
+		RankVector expected = cold.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 23));
+
+		String storageFile = new File(tmpFolder.getRoot(), "storage").getAbsolutePath();
+		new FileRankWriter(storageFile).write(expected);
+
+		RankComputer warm = createConvergingComputer();
+		warm.setMode(RankComputer.Mode.RESIDUAL);
+		warm.setInitialRanks(new FileRankReader(storageFile));
+		RankVector actual = warm.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 23));
+
+		assertTrue(warm.getStatistics().getLong("iterations") < cold.getStatistics().getLong("iterations"));
+		assertRanksEqual(expected, actual, 1e-4f);
+	}
+
+	@Test
+	public void testGaussSeidelModeMatchesPowerIterations() {
+		RankComputer power = createComputer();
+		power.setMaxIterations(200);
+		power.setEpsilon(1e-6f);
+		RankVector expected = power.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 29, 2));
+
+		for (boolean dense : new boolean[] { false, true }) {
+			RankComputer gaussSeidel = createComputer();
+			gaussSeidel.setMaxIterations(200);
+			gaussSeidel.setEpsilon(1e-6f);
+			gaussSeidel.setMode(RankComputer.Mode.GAUSS_SEIDEL);
+			gaussSeidel.setDenseNodes(dense);
+			RankVector actual = gaussSeidel.compute(ArrayGraphReader.powerLaw(NODES, EDGES, 29, 2));
+
+			assertEquals(true, gaussSeidel.getStatistics().get("converged"));
+			assertTrue(gaussSeidel.getStatistics().getLong("iterations") < power.getStatistics().getLong("iterations"));
+			assertRanksEqual(expected, actual, 1e-5f);
+			assertEquals(power.getMaxRank(), gaussSeidel.getMaxRank(), 1e-5);
+		}
+	}
+
+	@Test
+	public void testExtrapolationSavesIterations() {
+		RankComputer power = createComputer();
+		power.setMaxIterations(200);
+		power.setEpsilon(1e-6f);
+		RankVector expected = power.compute(ArrayGraphReader.local(NODES, EDGES, 31));
+
+		for (RankComputer.Extrapolation extrapolation : new RankComputer.Extrapolation[] {
+				RankComputer.Extrapolation.AITKEN, RankComputer.Extrapolation.QUADRATIC }) {
+			RankComputer extrapolated = createComputer();
+			extrapolated.setMaxIterations(200);
+			extrapolated.setEpsilon(1e-6f);
+			extrapolated.setExtrapolation(extrapolation);
+			extrapolated.setExtrapolationPeriod(6);
+			RankVector actual = extrapolated.compute(ArrayGraphReader.local(NODES, EDGES, 31));
+
+			assertEquals(true, extrapolated.getStatistics().get("converged"));
+			assertTrue(extrapolated.getStatistics().getLong("extrapolations") > 0);
+			assertTrue(extrapolated.getStatistics().getLong("iterations") < power.getStatistics().getLong("iterations"));
+			assertRanksEqual(expected, actual, 1e-5f);
+		}
+	}
+
+	@Test
+	public void testEdgePartitioning() {
+		// node 1 is a hub holding half of the edges
+		long[] from = new long[200];
+		long[] to = new long[200];
+		for (int idx = 0; idx < 200; idx++) {
+			from[idx] = idx < 100 ? 1 : idx;
+			to[idx] = 0;
+		}
+		long[] bounds = ParallelPowerIteration.partitionByEdges(buildAdjacency(200, from, to, 32), 4);
+
+		assertEquals(0, bounds[0]);
+		assertEquals(200, bounds[4]);
+		// the hub gets a partition of its own
+		assertEquals(2, bounds[1]);
+		for (int part = 1; part < 4; part++) {
+			assertTrue(bounds[part] <= bounds[part + 1]);
+		}
+	}
+
+	@Test
+	public void testAdjacencyTargetPacking() {
+		for (int bits : new int[] { 32, 40, 64 }) {
+			long base = bits == 32 ? 0xFFFF0000L : bits == 40 ? 0xFF00000000L : 0x7F0000000000L;
+			long[] from = { 2, 0, 2, 1, 2 };
+			long[] to = { base + 1, base + 2, base + 3, base + 4, base + 5 };
+
+			CSRAdjacency adjacency = buildAdjacency(4, from, to, bits);
+
+			assertEquals(5, adjacency.edgeCount());
+			assertEquals(1, adjacency.end(0) - adjacency.begin(0));
+			assertEquals(1, adjacency.end(1) - adjacency.begin(1));
+			assertEquals(3, adjacency.end(2) - adjacency.begin(2));
+			assertEquals(0, adjacency.end(3) - adjacency.begin(3));
+			assertEquals(base + 2, adjacency.target(adjacency.begin(0)));
+			assertEquals(base + 4, adjacency.target(adjacency.begin(1)));
+			assertEquals(base + 1, adjacency.target(adjacency.begin(2)));
+			assertEquals(base + 5, adjacency.target(adjacency.end(2) - 1));
+		}
+	}
+
+	RankComputer createComputer() {
+		return createComputer(tmpFolder.getRoot());
+	}
+
+	static RankComputer createComputer(File dataDir) {
+		RankComputer computer = new RankComputer();
+		computer.setDataDir(dataDir);
+		computer.setMaxIterations(20);
+		computer.setEpsilon(0);
+		return computer;
+	}
+
+	RankComputer createConvergingComputer() {
+		RankComputer computer = createComputer();
+		computer.setMaxIterations(100);
+		computer.setEpsilon(1e-4f);
+		return computer;
+	}
+
+	static CSRAdjacency buildAdjacency(long nodes, long[] from, long[] to, int entityBitSize) {
+		CSRAdjacency.Builder builder = new CSRAdjacency.Builder(nodes, entityBitSize);
+		for (int idx = 0; idx < from.length; idx++) {
+			builder.count(from[idx], to[idx]);
+		}
+		builder.startFill();
+		for (int idx = 0; idx < from.length; idx++) {
+			builder.fill(from[idx], to[idx]);
+		}
+		return builder.build();
+	}
+
+	static void assertRanksEqual(RankVector expected, RankVector actual, float delta) {
+		assertEquals(expected.length(), actual.length());
+		for (long idx = 0; idx < expected.length(); idx++) {
+			assertEquals("Rank of " + idx, expected.get(idx), actual.get(idx), delta);
+		}
+	}
+}